@@ -0,0 +1,93 @@
+#!/bin/bash
+# Confirming a morning's orders: ORDERS single PATCH /api/orders/{id}/confirm calls (one after another,
+# as the seller app did) against one POST /api/orders/bulk/confirm for the same number of orders.
+#
+#     BUYER_TOKEN=<jwt> SELLER_TOKEN=<jwt> BUYER_ID=2 MENU_ITEM_ID=1 ./benchmark/bulk_vs_single.sh
+#
+# Places 2 x ORDERS pending orders first (one set per mode), so the menu item needs at least
+# 2 x ORDERS in stock. Prints wall time and time per order for both modes. Every request changes real
+# orders and stock - run it against a scratch database, not production. Requires curl.
+
+set -e
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+ORDERS="${ORDERS:-100}"
+
+if [ -z "$BUYER_TOKEN" ] || [ -z "$SELLER_TOKEN" ] || [ -z "$BUYER_ID" ] || [ -z "$MENU_ITEM_ID" ]; then
+    echo "Set BUYER_TOKEN, SELLER_TOKEN, BUYER_ID and MENU_ITEM_ID"
+    exit 1
+fi
+
+if [ "$ORDERS" -gt 200 ]; then
+    echo "ORDERS must be at most 200 (the bulk endpoints take up to 200 ids)"
+    exit 1
+fi
+
+now_ms() {
+    date +%s%3N
+}
+
+place_order() {
+    curl -s -H "Authorization: Bearer $BUYER_TOKEN" -H "Content-Type: application/json" \
+        --data-binary @- "$BASE_URL/api/orders" <<JSON | sed -n 's/.*"data":{"id":\([0-9]*\).*/\1/p'
+{
+  "buyerId": $BUYER_ID,
+  "buyerName": "Benchmark buyer",
+  "buyerPhone": "9000000000",
+  "buyerAddress": "Benchmark street 1",
+  "total": 0,
+  "items": [
+    { "menuItemId": $MENU_ITEM_ID, "itemName": "Benchmark can", "quantity": 1, "cartQuantity": 1, "rate": 0, "subtotal": 0 }
+  ]
+}
+JSON
+}
+
+place_orders() {
+    local ids=()
+    for ((i = 0; i < ORDERS; i++)); do
+        local id
+        id=$(place_order)
+        if [ -z "$id" ]; then
+            echo "Could not place an order - check BUYER_TOKEN, BUYER_ID and MENU_ITEM_ID" >&2
+            exit 1
+        fi
+        ids+=("$id")
+    done
+    echo "${ids[@]}"
+}
+
+echo "Placing 2 x $ORDERS pending orders against $BASE_URL"
+read -r -a SINGLE_IDS <<< "$(place_orders)"
+read -r -a BULK_IDS <<< "$(place_orders)"
+if [ ${#SINGLE_IDS[@]} -ne "$ORDERS" ] || [ ${#BULK_IDS[@]} -ne "$ORDERS" ]; then
+    exit 1
+fi
+
+echo "Confirming $ORDERS orders one request at a time"
+failed=0
+start=$(now_ms)
+for id in "${SINGLE_IDS[@]}"; do
+    status=$(curl -s -o /dev/null -w "%{http_code}" -X PATCH \
+        -H "Authorization: Bearer $SELLER_TOKEN" -H "Content-Type: application/json" \
+        -d '{"confirmedBy": "benchmark"}' "$BASE_URL/api/orders/$id/confirm")
+    if [ "$status" != "200" ]; then
+        failed=$((failed + 1))
+    fi
+done
+single_ms=$(($(now_ms) - start))
+
+echo "Confirming $ORDERS orders with one bulk request"
+ids_json=$(IFS=','; echo "${BULK_IDS[*]}")
+start=$(now_ms)
+response=$(curl -s -H "Authorization: Bearer $SELLER_TOKEN" -H "Content-Type: application/json" \
+    -d "{\"orderIds\": [$ids_json], \"changedBy\": \"benchmark\"}" "$BASE_URL/api/orders/bulk/confirm")
+bulk_ms=$(($(now_ms) - start))
+bulk_failed=$(echo "$response" | sed -n 's/.*"failed":\([0-9]*\).*/\1/p')
+
+echo
+awk -v n="$ORDERS" -v single="$single_ms" -v bulk="$bulk_ms" -v sf="$failed" -v bf="${bulk_failed:-?}" 'BEGIN {
+    printf "single: %6d ms total, %6.2f ms/order (%d failed)\n", single, single / n, sf
+    printf "bulk:   %6d ms total, %6.2f ms/order (%s failed)\n", bulk, bulk / n, bf
+    if (bulk > 0) printf "bulk is %.1fx faster\n", single / bulk
+}'
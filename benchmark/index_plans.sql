@@ -0,0 +1,84 @@
+-- EXPLAIN check for the query indexes of migration V4 (and the order indexes of V1)
+--
+-- Seeds synthetic rows, then runs each repository query shape with EXPLAIN (ANALYZE, FORMAT JSON),
+-- fails if the plan does not use the expected index and prints the execution time otherwise.
+-- Run it against a scratch copy of the database after the application has started once (migrations applied):
+--
+--     psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f benchmark/index_plans.sql
+--
+-- Everything runs in one transaction that is rolled back at the end. To see the gain, run it once more
+-- after dropping the V4 indexes inside the transaction: the same queries fall back to sequential scans.
+--
+-- The same checks run as a JUnit test (QueryIndexPlanTest) when TEST_DATABASE_URL is set; keep both in sync.
+
+BEGIN;
+
+CREATE FUNCTION pg_temp.expect_index(label text, index_name text, query text) RETURNS void AS $$
+DECLARE
+    plan json;
+BEGIN
+    EXECUTE 'EXPLAIN (ANALYZE, FORMAT JSON) ' || query INTO plan;
+    IF plan::text NOT LIKE '%"Index Name": "' || index_name || '"%' THEN
+        RAISE EXCEPTION '% does not use %: %', label, index_name, plan;
+    END IF;
+    RAISE NOTICE '% uses % (% ms)', label, index_name, plan -> 0 ->> 'Execution Time';
+END;
+$$ LANGUAGE plpgsql;
+
+INSERT INTO users (username, password, role, email, created_at)
+SELECT 'bench_user_' || g, 'x', 'buyer', 'bench' || g || '@example.com', now()
+FROM generate_series(1, 50000) AS g;
+
+INSERT INTO menu_items (name, category, stock_quantity, low_stock_threshold, rate, created_at)
+SELECT 'Bench item ' || g, 'water', CASE WHEN g % 100 = 0 THEN 2 ELSE 500 END, 10, 20, now()
+FROM generate_series(1, 20000) AS g;
+
+INSERT INTO settings (setting_key, setting_value, updated_at)
+SELECT 'bench_' || g, 'x', now()
+FROM generate_series(1, 20000) AS g;
+
+INSERT INTO order_status_history (order_id, old_status, new_status, changed_by, changed_at)
+SELECT g / 4, 'pending', 'confirmed', 'bench', now() - g * interval '1 second'
+FROM generate_series(1, 400000) AS g;
+
+INSERT INTO stock_history (menu_item_id, order_id, change_type, quantity_change, quantity_before,
+                           quantity_after, changed_by, changed_at)
+SELECT g % 2000, g / 2, 'order_confirmed', -1, 10, 9, 'bench', now() - g * interval '1 second'
+FROM generate_series(1, 400000) AS g;
+
+INSERT INTO buyer_notifications (buyer_id, order_id, message, is_read, created_at)
+SELECT g % 20000, g, 'Bench notification', g % 3 = 0, now() - g * interval '1 second'
+FROM generate_series(1, 400000) AS g;
+
+INSERT INTO notifications (order_id, customer_name, total, item_count, is_read, created_at)
+SELECT g, 'Bench buyer', 100, 1, g % 50 <> 0, now() - g * interval '1 second'
+FROM generate_series(1, 200000) AS g;
+
+ANALYZE users;
+ANALYZE menu_items;
+ANALYZE settings;
+ANALYZE order_status_history;
+ANALYZE stock_history;
+ANALYZE buyer_notifications;
+ANALYZE notifications;
+
+SELECT pg_temp.expect_index('Order status history', 'idx_order_status_history_order_changed',
+    'SELECT * FROM order_status_history WHERE order_id = 4242 ORDER BY changed_at ASC');
+SELECT pg_temp.expect_index('Stock history of a menu item', 'idx_stock_history_item_changed',
+    'SELECT * FROM stock_history WHERE menu_item_id = 42 ORDER BY changed_at DESC');
+SELECT pg_temp.expect_index('Stock history of an order', 'idx_stock_history_order_changed',
+    'SELECT * FROM stock_history WHERE order_id = 4242 ORDER BY changed_at DESC');
+SELECT pg_temp.expect_index('Unread buyer notifications', 'idx_buyer_notifications_buyer_read_created',
+    'SELECT * FROM buyer_notifications WHERE buyer_id = 42 AND is_read = false ORDER BY created_at DESC');
+SELECT pg_temp.expect_index('Unread buyer notification count', 'idx_buyer_notifications_buyer_read_created',
+    'SELECT count(*) FROM buyer_notifications WHERE buyer_id = 42 AND is_read = false');
+SELECT pg_temp.expect_index('Unread seller notifications', 'idx_notifications_read_created',
+    'SELECT * FROM notifications WHERE is_read = false ORDER BY created_at DESC');
+SELECT pg_temp.expect_index('User by email', 'idx_users_email',
+    'SELECT * FROM users WHERE email = ''bench4242@example.com'' LIMIT 1');
+SELECT pg_temp.expect_index('Setting by key', 'uk_settings_setting_key',
+    'SELECT * FROM settings WHERE setting_key = ''bench_4242''');
+SELECT pg_temp.expect_index('Low stock items', 'idx_menu_items_low_stock',
+    'SELECT * FROM menu_items WHERE stock_quantity <= low_stock_threshold ORDER BY stock_quantity ASC');
+
+ROLLBACK;
@@ -0,0 +1,89 @@
+#!/bin/bash
+# Insert cost of large orders (many lines): one POST /api/orders at a time, so the latency is the
+# order + order_items + status history + notification inserts of a single transaction.
+#
+# Run it against a scratch database on this build (pooled sequences + JDBC batching) and on one from
+# before the switch (IDENTITY ids, one INSERT round trip per row), with the same settings:
+#
+#     TOKEN=<jwt> BUYER_ID=2 MENU_ITEM_IDS=1,2,3 ./benchmark/large_order_inserts.sh
+#
+# Prints average / p50 / p95 / max latency per order. With pg_stat_statements enabled, the INSERT
+# statements per order show the batching directly (reWriteBatchedInserts turns a batch into one
+# multi-row INSERT):
+#
+#     SELECT calls, rows, left(query, 60) FROM pg_stat_statements
+#     WHERE query ILIKE 'insert into order%' ORDER BY calls DESC;
+#
+# Every request places a real order - don't point it at production. Requires curl.
+
+set -e
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+ORDERS="${ORDERS:-200}"
+LINES="${LINES:-40}"
+WARMUP="${WARMUP:-20}"
+
+if [ -z "$TOKEN" ] || [ -z "$BUYER_ID" ] || [ -z "$MENU_ITEM_IDS" ]; then
+    echo "Set TOKEN (JWT of the buyer), BUYER_ID and MENU_ITEM_IDS (comma-separated)"
+    exit 1
+fi
+
+IFS=',' read -r -a ITEM_IDS <<< "$MENU_ITEM_IDS"
+
+BODY_FILE=$(mktemp)
+TIMES_FILE=$(mktemp)
+trap 'rm -f "$BODY_FILE" "$TIMES_FILE"' EXIT
+
+# One order with $LINES lines, cycling through the given menu items
+{
+    echo "{"
+    echo "  \"buyerId\": $BUYER_ID,"
+    echo "  \"buyerName\": \"Benchmark buyer\","
+    echo "  \"buyerPhone\": \"9000000000\","
+    echo "  \"buyerAddress\": \"Benchmark street 1\","
+    echo "  \"total\": 0,"
+    echo "  \"items\": ["
+    for ((i = 0; i < LINES; i++)); do
+        item_id=${ITEM_IDS[$((i % ${#ITEM_IDS[@]}))]}
+        separator=$([ $i -lt $((LINES - 1)) ] && echo "," || echo "")
+        echo "    { \"menuItemId\": $item_id, \"itemName\": \"Benchmark line $i\", \"quantity\": 1, \"cartQuantity\": 1, \"rate\": 0, \"subtotal\": 0 }$separator"
+    done
+    echo "  ]"
+    echo "}"
+} > "$BODY_FILE"
+
+place_order() {
+    curl -s -o /dev/null -w "%{http_code} %{time_total}\n" \
+        -H "Authorization: Bearer $TOKEN" -H "Content-Type: application/json" \
+        --data-binary "@$BODY_FILE" "$BASE_URL/api/orders"
+}
+
+echo "Warming up with $WARMUP orders of $LINES lines"
+for ((i = 0; i < WARMUP; i++)); do
+    place_order > /dev/null
+done
+
+echo "Placing $ORDERS orders of $LINES lines one after another against $BASE_URL"
+failed=0
+for ((i = 0; i < ORDERS; i++)); do
+    read -r status seconds <<< "$(place_order)"
+    if [ "$status" != "201" ] && [ "$status" != "200" ]; then
+        failed=$((failed + 1))
+        continue
+    fi
+    echo "$seconds" >> "$TIMES_FILE"
+done
+
+if [ ! -s "$TIMES_FILE" ]; then
+    echo "No order succeeded - check TOKEN, BUYER_ID and MENU_ITEM_IDS"
+    exit 1
+fi
+
+sort -n "$TIMES_FILE" | awk -v failed="$failed" -v lines="$LINES" '
+    function pct(p,    i) { i = int(NR * p + 0.5); return t[i < 1 ? 1 : i] }
+    { t[NR] = $1 * 1000; sum += t[NR] }
+    END {
+        printf "orders: %d ok, %d failed (%d lines each)\n", NR, failed, lines
+        printf "avg %.1f ms  p50 %.1f ms  p95 %.1f ms  max %.1f ms\n", sum / NR, pct(0.50), pct(0.95), t[NR]
+        printf "per line: %.2f ms\n", sum / NR / lines
+    }'
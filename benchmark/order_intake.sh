@@ -0,0 +1,53 @@
+#!/bin/bash
+# Throughput of POST /api/orders: per-request transactions vs. micro-batched intake (OrderIntakeService)
+#
+# Start the backend once with orders.intake.enabled=false and once with orders.intake.enabled=true
+# (e.g. ORDERS_INTAKE_ENABLED=true), against a scratch database, and run this script against each:
+#
+#     TOKEN=<jwt> MENU_ITEM_ID=1 BUYER_ID=2 ./benchmark/order_intake.sh
+#
+# Compare "Requests per second" and the latency percentiles of both runs; with batching enabled,
+# /api/metrics -> orderIntake shows the batch sizes that were reached. Requires ApacheBench (ab).
+# Every request places a real order - don't point it at production.
+
+set -e
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+REQUESTS="${REQUESTS:-5000}"
+CONCURRENCY="${CONCURRENCY:-100}"
+
+if [ -z "$TOKEN" ] || [ -z "$MENU_ITEM_ID" ] || [ -z "$BUYER_ID" ]; then
+    echo "Set TOKEN (JWT of the buyer), MENU_ITEM_ID and BUYER_ID"
+    exit 1
+fi
+
+if ! command -v ab > /dev/null; then
+    echo "ApacheBench (ab) not found - install apache2-utils / httpd-tools"
+    exit 1
+fi
+
+BODY_FILE=$(mktemp)
+trap 'rm -f "$BODY_FILE"' EXIT
+cat > "$BODY_FILE" <<JSON
+{
+  "buyerId": $BUYER_ID,
+  "buyerName": "Benchmark buyer",
+  "buyerPhone": "9000000000",
+  "buyerAddress": "Benchmark street 1",
+  "total": 0,
+  "items": [
+    { "menuItemId": $MENU_ITEM_ID, "itemName": "Benchmark can", "quantity": 2, "cartQuantity": 2, "rate": 0, "subtotal": 0 }
+  ]
+}
+JSON
+
+echo "Placing $REQUESTS orders with $CONCURRENCY concurrent clients against $BASE_URL"
+ab -q -n "$REQUESTS" -c "$CONCURRENCY" \
+    -p "$BODY_FILE" -T "application/json" \
+    -H "Authorization: Bearer $TOKEN" \
+    "$BASE_URL/api/orders"
+
+echo
+echo "Intake metrics (ADMIN_TOKEN if /api/metrics needs another role):"
+curl -s -H "Authorization: Bearer ${ADMIN_TOKEN:-$TOKEN}" "$BASE_URL/api/metrics"
+echo
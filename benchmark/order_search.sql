@@ -0,0 +1,79 @@
+-- Order search benchmark for GET /api/orders/search
+--
+-- Seeds 1,000,000 synthetic orders and runs the queries behind OrderRepository.searchIdPage /
+-- searchIdPageByStatus / countSearch with EXPLAIN ANALYZE. Run it against a scratch copy of the
+-- database after the application has started once (so orders, orders_seq and idx_orders_search_trgm exist):
+--
+--     psql "$DATABASE_URL" -f benchmark/order_search.sql
+--
+-- Everything runs in one transaction that is rolled back at the end.
+-- Expected: the selective searches use a Bitmap Index Scan on idx_orders_search_trgm and finish in
+-- a few ms; the broad search + status page is served from the (order_date, id) index in well under 10 ms.
+--
+-- The search expression below must match OrderRepository.SEARCH_DOCUMENT.
+
+\timing on
+BEGIN;
+
+INSERT INTO orders (buyer_id, buyer_name, buyer_phone, delivery_address, tracking_number,
+                    total, status, order_date, version)
+SELECT (g % 50000) + 1,
+       'Buyer ' || md5(g::text),
+       '+91 9' || lpad(g::text, 9, '0'),
+       g || ', ' || (ARRAY['Anna Nagar', 'T Nagar', 'Velachery', 'Adyar', 'Tambaram'])[1 + g % 5] || ', Chennai',
+       CASE WHEN g % 3 = 0 THEN 'TRK' || lpad(g::text, 10, '0') END,
+       round((20 + random() * 500)::numeric, 2),
+       (ARRAY['pending', 'confirmed', 'processing', 'delivered', 'canceled'])[1 + g % 5],
+       now() - g * interval '30 seconds',
+       0
+FROM generate_series(1, 1000000) AS g;
+
+ANALYZE orders;
+
+SELECT '%' || substr(md5('424242'), 1, 10) || '%' AS name_pattern \gset
+
+-- 1. Buyer name fragment (one match)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM orders
+WHERE lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+            coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, '')) LIKE :'name_pattern'
+  AND order_date >= '2000-01-01' AND order_date <= '9999-12-31 23:59:59'
+  AND (order_date < '9999-12-31 23:59:59' OR (order_date = '9999-12-31 23:59:59' AND id < 9223372036854775807))
+ORDER BY order_date DESC, id DESC LIMIT 21;
+
+-- 2. Phone number (one match)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM orders
+WHERE lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+            coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, '')) LIKE '%9000424242%'
+  AND order_date >= '2000-01-01' AND order_date <= '9999-12-31 23:59:59'
+  AND (order_date < '9999-12-31 23:59:59' OR (order_date = '9999-12-31 23:59:59' AND id < 9223372036854775807))
+ORDER BY order_date DESC, id DESC LIMIT 21;
+
+-- 3. Tracking number (one match)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM orders
+WHERE lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+            coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, '')) LIKE '%trk0000300000%'
+  AND order_date >= '2000-01-01' AND order_date <= '9999-12-31 23:59:59'
+  AND (order_date < '9999-12-31 23:59:59' OR (order_date = '9999-12-31 23:59:59' AND id < 9223372036854775807))
+ORDER BY order_date DESC, id DESC LIMIT 21;
+
+-- 4. Broad address term + status (~200,000 matches, first page)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id FROM orders
+WHERE lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+            coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, '')) LIKE '%velachery%'
+  AND status = 'processing'
+  AND order_date >= '2000-01-01' AND order_date <= '9999-12-31 23:59:59'
+  AND (order_date < '9999-12-31 23:59:59' OR (order_date = '9999-12-31 23:59:59' AND id < 9223372036854775807))
+ORDER BY order_date DESC, id DESC LIMIT 21;
+
+-- 5. Total for a selective search (?includeTotal=true)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM orders
+WHERE lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+            coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, '')) LIKE :'name_pattern'
+  AND order_date >= '2000-01-01' AND order_date <= '9999-12-31 23:59:59';
+
+ROLLBACK;
@@ -0,0 +1,81 @@
+#!/bin/bash
+# Idle Server-Sent Events connections (GET /api/orders/stream): opens CONNECTIONS streams, keeps them
+# open for HOLD_SECONDS and samples the server while they sit idle (only heartbeats flowing).
+#
+#     TOKEN=<jwt> ADMIN_TOKEN=<admin jwt> SERVER_PID=<backend pid> ./benchmark/sse_idle_connections.sh
+#
+# Expected: /api/metrics -> orderStream.connections follows the number of open streams while the
+# backend's thread count (SERVER_PID, optional) stays flat - idle streams hold a socket, not a thread.
+# Placing an order while the streams are open shows the fan-out cost in orderStream.delivered.
+#
+# Needs enough file descriptors on both sides (ulimit -n), orders.stream.max-connections and
+# server.tomcat.max-connections above CONNECTIONS. Requires curl.
+
+set -e
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+CONNECTIONS="${CONNECTIONS:-2000}"
+HOLD_SECONDS="${HOLD_SECONDS:-120}"
+SAMPLE_SECONDS="${SAMPLE_SECONDS:-10}"
+# Open connections in batches so the accept queue isn't flooded
+BATCH="${BATCH:-200}"
+
+if [ -z "$TOKEN" ]; then
+    echo "Set TOKEN (JWT of a buyer or seller); ADMIN_TOKEN for /api/metrics, SERVER_PID for thread / memory samples"
+    exit 1
+fi
+
+if [ "$(ulimit -n)" != "unlimited" ] && [ "$(ulimit -n)" -le "$CONNECTIONS" ]; then
+    echo "ulimit -n is $(ulimit -n); raise it above CONNECTIONS ($CONNECTIONS) first"
+    exit 1
+fi
+
+PIDS=()
+cleanup() {
+    if [ ${#PIDS[@]} -gt 0 ]; then
+        kill "${PIDS[@]}" 2> /dev/null || true
+    fi
+}
+trap cleanup EXIT
+
+sample() {
+    local label=$1
+    local open=0
+    for pid in "${PIDS[@]}"; do
+        if kill -0 "$pid" 2> /dev/null; then
+            open=$((open + 1))
+        fi
+    done
+    local server=""
+    if [ -n "$SERVER_PID" ]; then
+        server=$(ps -o nlwp=,rss= -p "$SERVER_PID" | awk '{ printf "  server threads %d, rss %d MB", $1, $2 / 1024 }')
+    fi
+    local stream
+    stream=$(curl -s -H "Authorization: Bearer ${ADMIN_TOKEN:-$TOKEN}" "$BASE_URL/api/metrics" \
+        | grep -o '"orderStream":{[^}]*}' || echo "orderStream metrics unavailable")
+    echo "[$label] client streams open: $open$server"
+    echo "    $stream"
+}
+
+sample "before"
+
+echo "Opening $CONNECTIONS idle streams against $BASE_URL"
+for ((i = 0; i < CONNECTIONS; i++)); do
+    curl -s -N -o /dev/null --max-time $((HOLD_SECONDS + 60)) \
+        -H "Authorization: Bearer $TOKEN" -H "Accept: text/event-stream" \
+        "$BASE_URL/api/orders/stream" &
+    PIDS+=($!)
+    if [ $(((i + 1) % BATCH)) -eq 0 ]; then
+        sleep 1
+    fi
+done
+
+for ((elapsed = 0; elapsed < HOLD_SECONDS; elapsed += SAMPLE_SECONDS)); do
+    sleep "$SAMPLE_SECONDS"
+    sample "$((elapsed + SAMPLE_SECONDS))s"
+done
+
+cleanup
+PIDS=()
+sleep 2
+sample "after close"
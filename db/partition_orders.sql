@@ -0,0 +1,106 @@
+-- One-time conversion of orders into a table range-partitioned by order_date (one partition per month).
+--
+-- Run in a maintenance window with the application stopped, after it has started at least once on
+-- this database (so the Flyway migrations have created orders_seq and pg_trgm):
+--
+--     psql "$DATABASE_URL" -f db/partition_orders.sql
+--
+-- Afterwards OrderArchiveService creates the partitions for upcoming months automatically, and the
+-- date-range queries in OrderRepository only scan the partitions of the requested months.
+--
+-- PostgreSQL requires the partition key in every unique constraint, so the primary key becomes
+-- (id, order_date) and a foreign key can no longer reference orders (id) alone. The script drops the
+-- one the application created - order_items.order_id -> orders (OrderItem no longer declares it, so
+-- Hibernate won't try to add it back) - and stops without changing anything if any other table has a
+-- foreign key to orders, so it is never dropped silently. Ids stay unique: they all come from orders_seq.
+--
+-- This is not a Flyway migration (it locks and copies the whole table), so later migrations must work
+-- with orders partitioned or not - see src/main/resources/db/migration/README.md. Running it twice
+-- stops at the first check below.
+
+BEGIN;
+
+LOCK TABLE orders IN ACCESS EXCLUSIVE MODE;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'orders'::regclass) THEN
+        RAISE EXCEPTION 'orders is already partitioned';
+    END IF;
+    IF to_regclass('orders_unpartitioned') IS NOT NULL THEN
+        RAISE EXCEPTION 'orders_unpartitioned exists from an earlier conversion; drop or rename it first';
+    END IF;
+END $$;
+
+-- Foreign key from order_items.order_id (name generated by Hibernate); any other one referencing
+-- orders aborts the conversion
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+              WHERE contype = 'f' AND confrelid = 'orders'::regclass
+                AND conrelid <> 'order_items'::regclass LOOP
+        RAISE EXCEPTION 'Foreign key % on % references orders; drop or rework it before partitioning',
+            fk.conname, fk.tbl;
+    END LOOP;
+
+    FOR fk IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+              WHERE contype = 'f' AND confrelid = 'orders'::regclass
+                AND conrelid = 'order_items'::regclass LOOP
+        RAISE NOTICE 'Dropping foreign key % on %', fk.conname, fk.tbl;
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.tbl, fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+
+-- Free the index names (and the primary key name) for the new table
+DO $$
+DECLARE
+    idx record;
+BEGIN
+    FOR idx IN SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+               WHERE i.indrelid = 'orders_unpartitioned'::regclass LOOP
+        EXECUTE format('ALTER INDEX %I RENAME TO %I', idx.relname, left(idx.relname, 55) || '_old');
+    END LOOP;
+END $$;
+
+CREATE TABLE orders (LIKE orders_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (order_date);
+
+ALTER TABLE orders ADD CONSTRAINT orders_pkey PRIMARY KEY (id, order_date);
+
+-- Same indexes as the Flyway migrations (V1, V3); created on every partition
+CREATE INDEX idx_orders_date_id ON orders (order_date, id);
+CREATE INDEX idx_orders_status_date_id ON orders (status, order_date, id);
+CREATE INDEX idx_orders_buyer_date_id ON orders (buyer_id, order_date, id);
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_orders_search_trgm ON orders USING gin ((
+    lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+          coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, ''))) gin_trgm_ops);
+
+-- Monthly partitions from the oldest order to three months ahead (named like OrderArchiveService does)
+DO $$
+DECLARE
+    month date := date_trunc('month', coalesce((SELECT min(order_date) FROM orders_unpartitioned), now()))::date;
+    last_month date := (date_trunc('month', now()) + interval '3 months')::date;
+BEGIN
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                       'orders_p' || to_char(month, 'YYYY_MM'), month, (month + interval '1 month')::date);
+        month := (month + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+-- Safety net for dates outside the monthly partitions; stays empty while the partitions are created ahead
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+
+INSERT INTO orders SELECT * FROM orders_unpartitioned;
+
+ANALYZE orders;
+
+COMMIT;
+
+-- Once the application has been checked against the partitioned table:
+-- DROP TABLE orders_unpartitioned;
@@ -0,0 +1,182 @@
+package com.naturaldrops.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naturaldrops.util.MetricsSource;
+import com.naturaldrops.util.TokenBucketRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limits the expensive public auth endpoints (login: BCrypt, forgot-password: SMTP + DB writes)
+ * per client IP and per submitted username/email, before the request reaches AuthController.
+ * Rejected requests get 429 with Retry-After. Bodies larger than MAX_BODY_BYTES get 413; at most
+ * MAX_BODY_BYTES + 1 bytes are ever read to find that out.
+ */
+@Slf4j
+public class AuthRateLimitFilter extends OncePerRequestFilter implements MetricsSource {
+    
+    // Auth request bodies are tiny; anything bigger is refused rather than buffered
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+    
+    private final Map<String, Rule> rules;
+    private final ObjectMapper objectMapper;
+    
+    AuthRateLimitFilter(Map<String, Rule> rules, ObjectMapper objectMapper) {
+        this.rules = rules;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod()) || findRule(request) == null;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Rule rule = findRule(request);
+        
+        // Per-IP check first - it needs no body parsing
+        long waitNanos = rule.ipLimiter.tryAcquire(request.getRemoteAddr());
+        if (waitNanos > 0) {
+            reject(response, waitNanos);
+            return;
+        }
+        
+        byte[] body = request.getContentLengthLong() > MAX_BODY_BYTES ? null : readBody(request);
+        if (body == null) {
+            rule.tooLarge.increment();
+            rejectTooLarge(response);
+            return;
+        }
+        
+        CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request, body);
+        String key = extractKey(cachedRequest.getBody(), rule.keyField);
+        if (key != null) {
+            waitNanos = rule.keyLimiter.tryAcquire(key);
+            if (waitNanos > 0) {
+                reject(response, waitNanos);
+                return;
+            }
+        }
+        
+        filterChain.doFilter(cachedRequest, response);
+    }
+    
+    private Rule findRule(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (!contextPath.isEmpty() && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+        return rules.get(path);
+    }
+    
+    /**
+     * Read the body, or return null as soon as it turns out to be longer than MAX_BODY_BYTES
+     * (covers chunked requests without a Content-Length)
+     */
+    private static byte[] readBody(HttpServletRequest request) throws IOException {
+        InputStream in = request.getInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        byte[] buffer = new byte[4096];
+        int total = 0;
+        while (total <= MAX_BODY_BYTES) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, MAX_BODY_BYTES + 1 - total));
+            if (read == -1) {
+                return out.toByteArray();
+            }
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return null;
+    }
+    
+    private String extractKey(byte[] body, String field) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode value = objectMapper.readTree(body).get(field);
+            if (value == null || !value.isTextual() || value.asText().trim().isEmpty()) {
+                return null;
+            }
+            return value.asText().trim().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            // Malformed JSON - let the controller produce the usual 400
+            return null;
+        }
+    }
+    
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json");
+        response.getWriter().write(
+            "{\"success\":false,\"message\":\"Too many attempts. Please try again later.\"}"
+        );
+    }
+    
+    private static void rejectTooLarge(HttpServletResponse response) throws IOException {
+        response.setStatus(413);
+        response.setContentType("application/json");
+        response.getWriter().write(
+            "{\"success\":false,\"message\":\"Request body is too large.\"}"
+        );
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "authRateLimit";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, Rule> entry : rules.entrySet()) {
+            Rule rule = entry.getValue();
+            Map<String, Object> ruleMetrics = new LinkedHashMap<>();
+            ruleMetrics.put("ipAllowed", rule.ipLimiter.getAllowedCount());
+            ruleMetrics.put("ipRejected", rule.ipLimiter.getRejectedCount());
+            ruleMetrics.put("ipKeys", rule.ipLimiter.size());
+            ruleMetrics.put(rule.keyField + "Allowed", rule.keyLimiter.getAllowedCount());
+            ruleMetrics.put(rule.keyField + "Rejected", rule.keyLimiter.getRejectedCount());
+            ruleMetrics.put(rule.keyField + "Keys", rule.keyLimiter.size());
+            ruleMetrics.put("tooLarge", rule.tooLarge.sum());
+            ruleMetrics.put("evictions", rule.ipLimiter.getEvictionCount() + rule.keyLimiter.getEvictionCount());
+            metrics.put(entry.getKey(), ruleMetrics);
+        }
+        return metrics;
+    }
+    
+    /**
+     * Limits for one endpoint: one bucket per client IP and one per value of keyField in the JSON body
+     */
+    static class Rule {
+        final String keyField;
+        final TokenBucketRateLimiter ipLimiter;
+        final TokenBucketRateLimiter keyLimiter;
+        final LongAdder tooLarge = new LongAdder();
+        
+        Rule(String keyField, TokenBucketRateLimiter ipLimiter, TokenBucketRateLimiter keyLimiter) {
+            this.keyField = keyField;
+            this.ipLimiter = ipLimiter;
+            this.keyLimiter = keyLimiter;
+        }
+    }
+}
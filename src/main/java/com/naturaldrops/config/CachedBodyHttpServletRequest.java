@@ -0,0 +1,78 @@
+package com.naturaldrops.config;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request wrapper that buffers the (small) body so a filter can inspect it
+ * and the controller can still read it afterwards.
+ */
+class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
+    
+    private final byte[] body;
+    
+    CachedBodyHttpServletRequest(HttpServletRequest request, byte[] body) {
+        super(request);
+        this.body = body;
+    }
+    
+    byte[] getBody() {
+        return body;
+    }
+    
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream input = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public int read() {
+                return input.read();
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return input.read(b, off, len);
+            }
+        };
+    }
+    
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+    
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+    
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+}
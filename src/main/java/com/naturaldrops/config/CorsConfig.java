@@ -42,7 +42,7 @@ public class CorsConfig {
         config.setMaxAge(3600L);
         
         // Expose headers for mobile clients
-        config.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Total-Count"));
+        config.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Total-Count", "X-Next-Cursor", "Retry-After", "Idempotent-Replayed", "ETag"));
         
         source.registerCorsConfiguration("/api/**", config);
         
@@ -1,8 +1,9 @@
 package com.naturaldrops.config;
 
-import com.naturaldrops.repository.UserRepository;
+import com.naturaldrops.security.TokenEpochRegistry;
 import com.naturaldrops.util.JwtTokenProvider;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,11 +13,30 @@ import org.springframework.context.annotation.Configuration;
 public class JwtFilterConfig {
     
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserRepository userRepository;
+    private final TokenEpochRegistry tokenEpochRegistry;
+    
+    // Public endpoints that don't require JWT authentication
+    // These endpoints must work without Authorization header
+    // Format: "[METHOD[|METHOD]] /path" - each entry also covers its sub-paths
+    @Value("${security.public-endpoints:"
+            + "/api/auth/login,"
+            + "/api/auth/register,"
+            + "/api/auth/forgot-password,"
+            + "/api/auth/reset-password,"
+            + "/api/auth/refresh-token,"
+            + "/api/health,"
+            + "GET /api/settings/customer-contact-number,"
+            + "GET /api/settings/customer-support-email}")
+    private String[] publicEndpoints;
+    
+    @Bean
+    public PublicEndpointMatcher publicEndpointMatcher() {
+        return PublicEndpointMatcher.compile(publicEndpoints);
+    }
     
     @Bean
     public JwtTokenFilter jwtTokenFilter() {
-        return new JwtTokenFilter(jwtTokenProvider, userRepository);
+        return new JwtTokenFilter(jwtTokenProvider, tokenEpochRegistry, publicEndpointMatcher());
     }
     
     @Bean
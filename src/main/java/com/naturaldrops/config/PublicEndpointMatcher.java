@@ -0,0 +1,105 @@
+package com.naturaldrops.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable route table of endpoints that don't require JWT authentication.
+ * Compiled once at startup from entries of the form "[METHOD[|METHOD...]] /path".
+ * An entry matches the path itself (exact set lookup) and any sub-path
+ * (segment trie walk), e.g. "/api/health" also matches "/api/health/db".
+ * Entries without a method prefix match every method.
+ */
+public final class PublicEndpointMatcher {
+    
+    private final Map<String, Set<String>> exactPaths;
+    private final Node root;
+    
+    private PublicEndpointMatcher(Map<String, Set<String>> exactPaths, Node root) {
+        this.exactPaths = exactPaths;
+        this.root = root;
+    }
+    
+    public static PublicEndpointMatcher compile(String... entries) {
+        Map<String, Set<String>> exactPaths = new HashMap<>();
+        Node root = new Node();
+        for (String rawEntry : entries) {
+            if (rawEntry == null || rawEntry.trim().isEmpty()) {
+                continue;
+            }
+            String entry = rawEntry.trim();
+            Set<String> methods = Collections.emptySet(); // empty = any method
+            int space = entry.indexOf(' ');
+            if (space > 0) {
+                methods = new HashSet<>();
+                for (String method : entry.substring(0, space).split("\\|")) {
+                    methods.add(method.trim().toUpperCase(Locale.ROOT));
+                }
+                methods = Collections.unmodifiableSet(methods);
+                entry = entry.substring(space + 1).trim();
+            }
+            if (!entry.startsWith("/")) {
+                entry = "/" + entry;
+            }
+            if (entry.length() > 1 && entry.endsWith("/")) {
+                entry = entry.substring(0, entry.length() - 1);
+            }
+            exactPaths.put(entry, methods);
+            
+            Node node = root;
+            for (String segment : entry.substring(1).split("/")) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+            node.methods = methods;
+        }
+        return new PublicEndpointMatcher(Collections.unmodifiableMap(exactPaths), root);
+    }
+    
+    /**
+     * @param method HTTP method of the request
+     * @param path   request path without context path or query string
+     */
+    public boolean matches(String method, String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return false;
+        }
+        
+        Set<String> exactMethods = exactPaths.get(path);
+        if (exactMethods != null) {
+            return allows(exactMethods, method);
+        }
+        
+        // Sub-path match: walk the segments until a registered endpoint is passed
+        Node node = root;
+        int start = 1;
+        int length = path.length();
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.methods != null && end < length && allows(node.methods, method)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+    
+    private static boolean allows(Set<String> methods, String method) {
+        return methods.isEmpty() || (method != null && methods.contains(method.toUpperCase(Locale.ROOT)));
+    }
+    
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Set<String> methods; // non-null when an endpoint ends at this node
+    }
+}
@@ -0,0 +1,71 @@
+package com.naturaldrops.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naturaldrops.util.TokenBucketRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+public class RateLimitConfig {
+    
+    private static final int STRIPES = 64;
+    
+    @Value("${security.rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    // Upper bound on tracked keys per limiter (least recently used keys are evicted first)
+    @Value("${security.rate-limit.max-keys:100000}")
+    private int maxKeys;
+    
+    @Value("${security.rate-limit.login.ip.capacity:20}")
+    private int loginIpCapacity;
+    
+    @Value("${security.rate-limit.login.ip.refill-per-minute:20}")
+    private double loginIpRefillPerMinute;
+    
+    @Value("${security.rate-limit.login.username.capacity:5}")
+    private int loginUsernameCapacity;
+    
+    @Value("${security.rate-limit.login.username.refill-per-minute:5}")
+    private double loginUsernameRefillPerMinute;
+    
+    @Value("${security.rate-limit.forgot-password.ip.capacity:5}")
+    private int forgotPasswordIpCapacity;
+    
+    @Value("${security.rate-limit.forgot-password.ip.refill-per-minute:5}")
+    private double forgotPasswordIpRefillPerMinute;
+    
+    @Value("${security.rate-limit.forgot-password.email.capacity:3}")
+    private int forgotPasswordEmailCapacity;
+    
+    @Value("${security.rate-limit.forgot-password.email.refill-per-minute:1}")
+    private double forgotPasswordEmailRefillPerMinute;
+    
+    @Bean
+    public AuthRateLimitFilter authRateLimitFilter(ObjectMapper objectMapper) {
+        Map<String, AuthRateLimitFilter.Rule> rules = new LinkedHashMap<>();
+        rules.put("/api/auth/login", new AuthRateLimitFilter.Rule("username",
+                new TokenBucketRateLimiter(loginIpCapacity, loginIpRefillPerMinute, maxKeys, STRIPES),
+                new TokenBucketRateLimiter(loginUsernameCapacity, loginUsernameRefillPerMinute, maxKeys, STRIPES)));
+        rules.put("/api/auth/forgot-password", new AuthRateLimitFilter.Rule("email",
+                new TokenBucketRateLimiter(forgotPasswordIpCapacity, forgotPasswordIpRefillPerMinute, maxKeys, STRIPES),
+                new TokenBucketRateLimiter(forgotPasswordEmailCapacity, forgotPasswordEmailRefillPerMinute, maxKeys, STRIPES)));
+        return new AuthRateLimitFilter(rules, objectMapper);
+    }
+    
+    @Bean
+    public FilterRegistrationBean<AuthRateLimitFilter> authRateLimitFilterRegistration(AuthRateLimitFilter authRateLimitFilter) {
+        FilterRegistrationBean<AuthRateLimitFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(authRateLimitFilter);
+        registration.addUrlPatterns("/api/auth/*");
+        // Run before JwtTokenFilter (order 1) so rejected requests cost as little as possible
+        registration.setOrder(0);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
@@ -1,5 +1,6 @@
 package com.naturaldrops.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -7,9 +8,12 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 @Configuration
 public class SecurityConfig {
     
+    // BCrypt cost factor (log2 rounds). Existing hashes with a lower cost are upgraded on next login.
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+    
     @Bean
     public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 }
-
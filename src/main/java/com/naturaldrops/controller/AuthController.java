@@ -9,7 +9,9 @@ import com.naturaldrops.dto.response.ApiResponse;
 import com.naturaldrops.dto.response.LoginResponse;
 import com.naturaldrops.dto.response.RefreshTokenResponse;
 import com.naturaldrops.entity.User;
+import com.naturaldrops.security.AuthenticatedPrincipal;
 import com.naturaldrops.service.AuthService;
+import com.naturaldrops.service.UserService;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -23,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
     
     private final AuthService authService;
+    private final UserService userService;
     
     @PostMapping("/register")
     public ResponseEntity<ApiResponse<User>> register(@Valid @RequestBody RegisterRequest request) {
@@ -44,7 +47,7 @@ public class AuthController {
     
     @PostMapping("/logout")
     public ResponseEntity<ApiResponse<Object>> logout(HttpServletRequest request) {
-        User currentUser = (User) request.getAttribute("currentUser");
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         if (currentUser != null) {
             authService.logout(currentUser.getId());
         }
@@ -53,11 +56,12 @@ public class AuthController {
     
     @GetMapping("/current")
     public ResponseEntity<ApiResponse<User>> getCurrentUser(HttpServletRequest request) {
-        User currentUser = (User) request.getAttribute("currentUser");
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         if (currentUser == null) {
             return ResponseEntity.ok(ApiResponse.error("Not authenticated"));
         }
-        return ResponseEntity.ok(ApiResponse.success(currentUser));
+        // The filter only carries the slim principal - load the full profile for this endpoint
+        return ResponseEntity.ok(ApiResponse.success(userService.getUserById(currentUser.getId())));
     }
     
     @PostMapping("/forgot-password")
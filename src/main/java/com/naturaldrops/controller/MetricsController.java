@@ -0,0 +1,45 @@
+package com.naturaldrops.controller;
+
+import com.naturaldrops.dto.response.ApiResponse;
+import com.naturaldrops.exception.UnauthorizedException;
+import com.naturaldrops.security.AuthenticatedPrincipal;
+import com.naturaldrops.util.MetricsSource;
+import javax.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+// CORS is handled globally by CorsConfig - no need for controller-level annotation
+public class MetricsController {
+    
+    private final List<MetricsSource> metricsSources;
+    
+    /**
+     * Runtime counters of in-process caches, limiters and background jobs (admin only)
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getMetrics(HttpServletRequest request) {
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        if (currentUser == null) {
+            throw new UnauthorizedException("Not authenticated");
+        }
+        if (!currentUser.isAdmin()) {
+            throw new UnauthorizedException("Access denied. Only administrators can access this resource.");
+        }
+        
+        Map<String, Map<String, Object>> metrics = new LinkedHashMap<>();
+        for (MetricsSource source : metricsSources) {
+            metrics.put(source.getMetricsName(), source.getMetrics());
+        }
+        return ResponseEntity.ok(ApiResponse.success(metrics));
+    }
+}
@@ -1,23 +1,37 @@
 package com.naturaldrops.controller;
 
+import com.naturaldrops.dto.request.BulkOrderActionRequest;
 import com.naturaldrops.dto.request.CreateOrderRequest;
 import com.naturaldrops.dto.request.UpdateOrderRequest;
 import com.naturaldrops.dto.request.UpdateOrderBillRequest;
 import com.naturaldrops.dto.response.ApiResponse;
+import com.naturaldrops.dto.response.BulkOrderActionResponse;
+import com.naturaldrops.dto.response.OrderPage;
 import com.naturaldrops.entity.Order;
 import com.naturaldrops.entity.OrderStatusHistory;
+import com.naturaldrops.exception.UnauthorizedException;
+import com.naturaldrops.security.AuthenticatedPrincipal;
+import com.naturaldrops.service.IdempotencyService;
+import com.naturaldrops.service.OrderIntakeService;
 import com.naturaldrops.service.OrderService;
+import com.naturaldrops.service.OrderStreamService;
 import com.naturaldrops.service.OrderPdfExportService;
+import com.naturaldrops.util.OrderFilter;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -25,23 +39,59 @@ import java.util.Map;
 // CORS is handled globally by CorsConfig - no need for controller-level annotation
 public class OrderController {
     
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    
     private final OrderService orderService;
     private final OrderPdfExportService orderPdfExportService;
+    private final IdempotencyService idempotencyService;
+    private final OrderIntakeService orderIntakeService;
+    private final OrderStreamService orderStreamService;
     
+    /**
+     * List orders. Passing ?limit= switches to keyset pagination: the next page is requested with
+     * ?cursor= set to the X-Next-Cursor response header (absent on the last page), and
+     * ?includeTotal=true adds X-Total-Count. Without limit the full list is returned as before.
+     * ?view=summary (on all list endpoints) returns lightweight summary rows, always paged.
+     *
+     * Filters can be combined freely: status (repeated or comma-separated), fromDate / toDate (yyyy-MM-dd),
+     * buyerId, paymentStatus and deliveryPartner; ?sort=oldest reverses the default newest-first order.
+     */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<Order>>> getAllOrders(
+    public ResponseEntity<ApiResponse<List<?>>> getAllOrders(
             @RequestParam(required = false) String fromDate,
             @RequestParam(required = false) String toDate,
-            @RequestParam(required = false) String status
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) Long buyerId,
+            @RequestParam(required = false) String paymentStatus,
+            @RequestParam(required = false) String deliveryPartner,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String view
     ) {
-        List<Order> orders = orderService.getOrdersFiltered(status, fromDate, toDate);
-        return ResponseEntity.ok(ApiResponse.success(orders));
+        OrderFilter filter = orderService.buildFilter(status, fromDate, toDate, buyerId, paymentStatus,
+                deliveryPartner, sort);
+        return listResponse(filter, limit, cursor, includeTotal, view);
     }
     
+    /**
+     * Single order with a strong ETag (its version). If-None-Match with the current ETag gets
+     * 304 Not Modified from a version-only query, without loading or serializing the order.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<Order>> getOrderById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<Order>> getOrderById(@PathVariable Long id, WebRequest webRequest) {
+        Optional<Long> version = orderService.findOrderVersion(id);
+        if (version.isPresent() && webRequest.checkNotModified(orderETag(version.get()))) {
+            return null; // 304 already written
+        }
         Order order = orderService.getOrderById(id);
-        return ResponseEntity.ok(ApiResponse.success(order));
+        return ResponseEntity.ok()
+                .eTag(orderETag(order.getVersion()))
+                .body(ApiResponse.success(order));
     }
 
     @GetMapping(value = "/{id}/export/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
@@ -63,10 +113,15 @@ public class OrderController {
     public ResponseEntity<byte[]> exportOrdersPdf(
             @RequestParam(required = false) String fromDate,
             @RequestParam(required = false) String toDate,
-            @RequestParam(required = false) String status,
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) Long buyerId,
+            @RequestParam(required = false) String paymentStatus,
+            @RequestParam(required = false) String deliveryPartner,
+            @RequestParam(required = false) String sort,
             @RequestParam(required = false) String sellerName
     ) {
-        List<Order> orders = orderService.getOrdersFiltered(status, fromDate, toDate);
+        List<Order> orders = orderService.getOrdersFiltered(orderService.buildFilter(status, fromDate, toDate,
+                buyerId, paymentStatus, deliveryPartner, sort));
         byte[] pdf = orderPdfExportService.generateMultiOrderPdf(orders, sellerName != null ? sellerName : "Seller");
         String date = java.time.LocalDate.now().toString();
         String filename = "orders_" + date + ".pdf";
@@ -77,93 +132,177 @@ public class OrderController {
     }
     
     @GetMapping("/buyer/{buyerId}")
-    public ResponseEntity<ApiResponse<List<Order>>> getOrdersByBuyer(@PathVariable Long buyerId) {
-        List<Order> orders = orderService.getOrdersByBuyerId(buyerId);
-        return ResponseEntity.ok(ApiResponse.success(orders));
+    public ResponseEntity<ApiResponse<List<?>>> getOrdersByBuyer(
+            @PathVariable Long buyerId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String view) {
+        return listResponse(OrderFilter.of(buyerId, null), limit, cursor, includeTotal, view);
     }
     
     @GetMapping("/buyer/{buyerId}/status/{status}")
-    public ResponseEntity<ApiResponse<List<Order>>> getOrdersByBuyerAndStatus(
+    public ResponseEntity<ApiResponse<List<?>>> getOrdersByBuyerAndStatus(
             @PathVariable Long buyerId,
-            @PathVariable Order.OrderStatus status) {
-        List<Order> orders = orderService.getOrdersByBuyerIdAndStatus(buyerId, status);
-        return ResponseEntity.ok(ApiResponse.success(orders));
+            @PathVariable Order.OrderStatus status,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String view) {
+        return listResponse(OrderFilter.of(buyerId, status), limit, cursor, includeTotal, view);
     }
     
     @GetMapping("/status/{status}")
-    public ResponseEntity<ApiResponse<List<Order>>> getOrdersByStatus(@PathVariable Order.OrderStatus status) {
-        List<Order> orders = orderService.getOrdersByStatus(status);
-        return ResponseEntity.ok(ApiResponse.success(orders));
+    public ResponseEntity<ApiResponse<List<?>>> getOrdersByStatus(
+            @PathVariable Order.OrderStatus status,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String view) {
+        return listResponse(OrderFilter.of(null, status), limit, cursor, includeTotal, view);
     }
     
+    /**
+     * Status history, with an ETag derived from the order version (every history entry is written
+     * together with an order update), so an unchanged history can be answered with 304
+     */
     @GetMapping("/{id}/history")
-    public ResponseEntity<ApiResponse<List<OrderStatusHistory>>> getOrderStatusHistory(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<List<OrderStatusHistory>>> getOrderStatusHistory(
+            @PathVariable Long id, WebRequest webRequest) {
+        Optional<Long> version = orderService.findOrderVersion(id);
+        if (!version.isPresent()) {
+            return ResponseEntity.ok(ApiResponse.success(orderService.getOrderStatusHistory(id)));
+        }
+        String eTag = historyETag(version.get());
+        if (webRequest.checkNotModified(eTag)) {
+            return null; // 304 already written
+        }
         List<OrderStatusHistory> history = orderService.getOrderStatusHistory(id);
-        return ResponseEntity.ok(ApiResponse.success(history));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(ApiResponse.success(history));
     }
     
     @GetMapping("/filter")
-    public ResponseEntity<ApiResponse<List<Order>>> getOrdersByPeriod(@RequestParam String period) {
-        List<Order> orders;
-        switch (period.toLowerCase()) {
-            case "today":
-                orders = orderService.getTodayOrders();
-                break;
-            case "week":
-                orders = orderService.getWeekOrders();
-                break;
-            case "month":
-                orders = orderService.getMonthOrders();
-                break;
-            default:
-                orders = orderService.getAllOrders();
-        }
-        return ResponseEntity.ok(ApiResponse.success(orders));
+    public ResponseEntity<ApiResponse<List<?>>> getOrdersByPeriod(
+            @RequestParam String period,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String view) {
+        return listResponse(orderService.buildPeriodFilter(period, sort), limit, cursor, includeTotal, view);
+    }
+    
+    /**
+     * Search by buyer name, phone, delivery address or tracking number (?q=, at least 3 characters),
+     * optionally narrowed by status / fromDate / toDate. Returns summary rows with keyset paging
+     * (?limit=, ?cursor= from X-Next-Cursor, ?includeTotal=true for X-Total-Count).
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse<List<?>>> searchOrders(
+            @RequestParam String q,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String fromDate,
+            @RequestParam(required = false) String toDate,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        if (q.trim().length() < OrderService.MIN_SEARCH_LENGTH) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Search text must be at least " + OrderService.MIN_SEARCH_LENGTH + " characters"));
+        }
+        return pageResponse(orderService.searchOrders(q, status, fromDate, toDate, cursor, pageSize(limit), includeTotal));
     }
     
+    /**
+     * Live order changes as Server-Sent Events ("order" events with a compact OrderChangeEvent).
+     * Sellers / admins receive all orders, buyers only their own. After a reconnect, the Last-Event-ID
+     * header replays what was missed; a "reset" event means the client should refetch its lists.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            javax.servlet.http.HttpServletRequest request) {
+        AuthenticatedPrincipal currentUser =
+                (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        if (currentUser == null) {
+            throw new UnauthorizedException("Authentication required");
+        }
+        return orderStreamService.subscribe(currentUser, lastEventId);
+    }
+    
+    /**
+     * Place an order. With an Idempotency-Key header, retries of the same request (same key, same user)
+     * return the originally created order instead of placing a duplicate; replays carry Idempotent-Replayed: true.
+     * Without one, the order goes through OrderIntakeService (micro-batched when orders.intake.enabled).
+     */
     @PostMapping
-    public ResponseEntity<ApiResponse<Order>> createOrder(@Valid @RequestBody CreateOrderRequest request) {
-        Order order = orderService.createOrder(request);
-        return ResponseEntity.ok(ApiResponse.success("Order placed successfully", order));
+    public ResponseEntity<ApiResponse<Order>> createOrder(
+            @Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            javax.servlet.http.HttpServletRequest httpRequest) {
+        if (idempotencyKey == null) {
+            Order order = orderIntakeService.createOrder(request);
+            return ResponseEntity.ok(ApiResponse.success("Order placed successfully", order));
+        }
+        
+        AuthenticatedPrincipal currentUser =
+                (AuthenticatedPrincipal) httpRequest.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        IdempotencyService.Outcome outcome = idempotencyService.createOrder(
+                idempotencyKey.trim(), currentUser != null ? currentUser.getId() : null, request);
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.isReplayed()))
+                .body(ApiResponse.success("Order placed successfully", outcome.getOrder()));
     }
 
+    // Order updates below accept If-Match with the order's ETag: if the order changed since the client
+    // loaded it, the update is rejected with 412 instead of being applied on top of the newer state.
+    // Responses carry the new ETag.
+    
     /**
      * Edit order before delivered (Pending/Confirmed only)
      */
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<Order>> updateOrder(
             @PathVariable Long id,
-            @Valid @RequestBody UpdateOrderRequest request
+            @Valid @RequestBody UpdateOrderRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
-        Order order = orderService.updateOrder(id, request);
-        return ResponseEntity.ok(ApiResponse.success("Order updated successfully", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.updateOrder(id, request));
+        return updated("Order updated successfully", order);
     }
     
     @PutMapping("/{id}/status")
-    public ResponseEntity<ApiResponse<Order>> updateOrderStatus(@PathVariable Long id, @RequestParam Order.OrderStatus status) {
-        Order order = orderService.updateOrderStatus(id, status);
-        return ResponseEntity.ok(ApiResponse.success("Order status updated", order));
+    public ResponseEntity<ApiResponse<Order>> updateOrderStatus(
+            @PathVariable Long id,
+            @RequestParam Order.OrderStatus status,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.updateOrderStatus(id, status));
+        return updated("Order status updated", order);
     }
     
     @PatchMapping("/{id}/confirm")
     public ResponseEntity<ApiResponse<Order>> confirmOrder(
             @PathVariable Long id,
             @RequestBody Map<String, String> payload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             javax.servlet.http.HttpServletRequest request) {
         // TODO: Validate seller authorization
-        // User currentUser = (User) request.getAttribute("currentUser");
+        // AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         // if (currentUser == null || (currentUser.getRole() != User.UserRole.seller && currentUser.getRole() != User.UserRole.admin)) {
         //     throw new UnauthorizedException("Only sellers and admins can confirm orders");
         // }
         String confirmedBy = payload.getOrDefault("confirmedBy", "seller");
-        Order order = orderService.confirmOrder(id, confirmedBy);
-        return ResponseEntity.ok(ApiResponse.success("Order confirmed successfully", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.confirmOrder(id, confirmedBy));
+        return updated("Order confirmed successfully", order);
     }
     
     @PutMapping("/{id}/process")
     public ResponseEntity<ApiResponse<Order>> markAsProcessing(
             @PathVariable Long id,
-            @RequestBody Map<String, Object> payload) {
+            @RequestBody Map<String, Object> payload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         String trackingNumber = (String) payload.get("trackingNumber");
         String deliveryPartner = (String) payload.get("deliveryPartner");
         String estimatedDeliveryStr = (String) payload.get("estimatedDelivery");
@@ -173,14 +312,16 @@ public class OrderController {
             ? LocalDateTime.parse(estimatedDeliveryStr) 
             : LocalDateTime.now().plusDays(3);
         
-        Order order = orderService.markAsProcessing(id, trackingNumber, deliveryPartner, estimatedDelivery, updatedBy);
-        return ResponseEntity.ok(ApiResponse.success("Order marked as processing", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch),
+                () -> orderService.markAsProcessing(id, trackingNumber, deliveryPartner, estimatedDelivery, updatedBy));
+        return updated("Order marked as processing", order);
     }
     
     @PutMapping("/{id}/on-the-way")
     public ResponseEntity<ApiResponse<Order>> setOnTheWay(
             @PathVariable Long id,
-            @RequestBody Map<String, Object> payload) {
+            @RequestBody Map<String, Object> payload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Long deliveryTotalSeconds = payload.get("deliveryTotalSeconds") != null
             ? ((Number) payload.get("deliveryTotalSeconds")).longValue()
             : null;
@@ -199,33 +340,92 @@ public class OrderController {
                 .body(ApiResponse.error("Delivery time must be a positive number"));
         }
         
-        Order order = orderService.setOnTheWay(id, deliveryTotalSeconds, updatedBy);
-        return ResponseEntity.ok(ApiResponse.success("Order set to On The Way", order));
+        long totalSeconds = deliveryTotalSeconds;
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch),
+                () -> orderService.setOnTheWay(id, totalSeconds, updatedBy));
+        return updated("Order set to On The Way", order);
     }
     
     @PutMapping("/{id}/deliver")
     public ResponseEntity<ApiResponse<Order>> markAsDelivered(
             @PathVariable Long id,
-            @RequestBody Map<String, String> payload) {
+            @RequestBody Map<String, String> payload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         String deliveredBy = payload.getOrDefault("deliveredBy", "admin");
-        Order order = orderService.markAsDelivered(id, deliveredBy);
-        return ResponseEntity.ok(ApiResponse.success("Order marked as delivered", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.markAsDelivered(id, deliveredBy));
+        return updated("Order marked as delivered", order);
     }
     
     @PatchMapping("/{id}/cancel")
     public ResponseEntity<ApiResponse<Order>> cancelOrder(
             @PathVariable Long id,
             @RequestBody Map<String, String> payload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             javax.servlet.http.HttpServletRequest request) {
         // TODO: Validate seller authorization
-        // User currentUser = (User) request.getAttribute("currentUser");
+        // AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         // if (currentUser == null || (currentUser.getRole() != User.UserRole.seller && currentUser.getRole() != User.UserRole.admin)) {
         //     throw new UnauthorizedException("Only sellers and admins can cancel orders");
         // }
         String canceledBy = payload.getOrDefault("canceledBy", "seller");
         String reason = payload.get("reason");
-        Order order = orderService.cancelOrder(id, canceledBy, reason);
-        return ResponseEntity.ok(ApiResponse.success("Order canceled successfully", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.cancelOrder(id, canceledBy, reason));
+        return updated("Order canceled successfully", order);
+    }
+    
+    // Bulk actions: one request for many orders, reporting success / failure per order.
+    // A batch that collides with a concurrent update of one of its orders is re-run on fresh data.
+    
+    @PostMapping("/bulk/confirm")
+    public ResponseEntity<ApiResponse<BulkOrderActionResponse>> bulkConfirm(
+            @Valid @RequestBody BulkOrderActionRequest request) {
+        String confirmedBy = request.getChangedBy() != null ? request.getChangedBy() : "seller";
+        BulkOrderActionResponse result = orderService.retryOnConflict(
+                () -> orderService.bulkConfirm(request.getOrderIds(), confirmedBy));
+        return ResponseEntity.ok(ApiResponse.success(bulkMessage("confirmed", result), result));
+    }
+    
+    @PostMapping("/bulk/on-the-way")
+    public ResponseEntity<ApiResponse<BulkOrderActionResponse>> bulkSetOnTheWay(
+            @Valid @RequestBody BulkOrderActionRequest request) {
+        Long deliveryTotalSeconds = request.getDeliveryTotalSeconds();
+        // Backward compatibility: accept legacy minutes field if seconds not provided
+        if ((deliveryTotalSeconds == null || deliveryTotalSeconds <= 0)
+                && request.getDeliveryTime() != null && request.getDeliveryTime() > 0) {
+            deliveryTotalSeconds = request.getDeliveryTime() * 60L;
+        }
+        if (deliveryTotalSeconds == null || deliveryTotalSeconds <= 0) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Delivery time must be a positive number"));
+        }
+        
+        long totalSeconds = deliveryTotalSeconds;
+        String updatedBy = request.getChangedBy() != null ? request.getChangedBy() : "seller";
+        BulkOrderActionResponse result = orderService.retryOnConflict(
+                () -> orderService.bulkSetOnTheWay(request.getOrderIds(), totalSeconds, updatedBy));
+        return ResponseEntity.ok(ApiResponse.success(bulkMessage("set to On The Way", result), result));
+    }
+    
+    @PostMapping("/bulk/cancel")
+    public ResponseEntity<ApiResponse<BulkOrderActionResponse>> bulkCancel(
+            @Valid @RequestBody BulkOrderActionRequest request) {
+        String canceledBy = request.getChangedBy() != null ? request.getChangedBy() : "seller";
+        BulkOrderActionResponse result = orderService.retryOnConflict(
+                () -> orderService.bulkCancel(request.getOrderIds(), canceledBy, request.getReason()));
+        return ResponseEntity.ok(ApiResponse.success(bulkMessage("canceled", result), result));
+    }
+    
+    @PostMapping("/bulk/deliver")
+    public ResponseEntity<ApiResponse<BulkOrderActionResponse>> bulkDeliver(
+            @Valid @RequestBody BulkOrderActionRequest request) {
+        String deliveredBy = request.getChangedBy() != null ? request.getChangedBy() : "admin";
+        BulkOrderActionResponse result = orderService.retryOnConflict(
+                () -> orderService.bulkDeliver(request.getOrderIds(), deliveredBy));
+        return ResponseEntity.ok(ApiResponse.success(bulkMessage("marked as delivered", result), result));
+    }
+    
+    private static String bulkMessage(String action, BulkOrderActionResponse result) {
+        return String.format("%d of %d orders %s", result.getSucceeded(), result.getRequested(), action);
     }
     
     /**
@@ -236,15 +436,91 @@ public class OrderController {
     public ResponseEntity<ApiResponse<Order>> updateOrderBill(
             @PathVariable Long id,
             @Valid @RequestBody UpdateOrderBillRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             javax.servlet.http.HttpServletRequest httpRequest) {
         // Get current user from request (set by JwtTokenFilter)
-        // User currentUser = (User) httpRequest.getAttribute("currentUser");
+        // AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) httpRequest.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         // if (currentUser == null || (currentUser.getRole() != User.UserRole.seller && currentUser.getRole() != User.UserRole.admin)) {
         //     throw new UnauthorizedException("Only sellers and admins can update order bills");
         // }
         
-        Order order = orderService.updateOrderBill(id, request);
-        return ResponseEntity.ok(ApiResponse.success("Order bill updated successfully", order));
+        Order order = orderService.applyUpdate(id, expectedVersions(ifMatch), () -> orderService.updateOrderBill(id, request));
+        return updated("Order bill updated successfully", order);
+    }
+    
+    private static String orderETag(Long version) {
+        return "\"v" + version + "\"";
+    }
+    
+    private static String historyETag(Long version) {
+        return "\"h" + version + "\"";
+    }
+    
+    /**
+     * Order versions accepted by an If-Match header, or null when there is no condition (absent or *).
+     * Only strong order ETags match; anything else yields an empty set, which always fails with 412.
+     */
+    private static Set<Long> expectedVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().isEmpty() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("\"v") && tag.endsWith("\"") && tag.length() > 3) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(2, tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // Not one of our ETags - ignore
+                }
+            }
+        }
+        return versions;
+    }
+    
+    private static ResponseEntity<ApiResponse<Order>> updated(String message, Order order) {
+        return ResponseEntity.ok()
+                .eTag(orderETag(order.getVersion()))
+                .body(ApiResponse.success(message, order));
+    }
+    
+    /**
+     * ?view=summary returns OrderSummaryResponse rows instead of full orders; it is always paged
+     * (limit defaults to the maximum page size)
+     */
+    private static boolean isSummaryView(String view) {
+        return "summary".equalsIgnoreCase(view);
+    }
+    
+    private static int pageSize(Integer limit) {
+        return limit != null ? limit : OrderService.MAX_PAGE_SIZE;
+    }
+    
+    /**
+     * Response of the filtered list endpoints: summary page, full page (?limit=) or the whole list
+     */
+    private ResponseEntity<ApiResponse<List<?>>> listResponse(OrderFilter filter, Integer limit, String cursor,
+                                                           boolean includeTotal, String view) {
+        if (isSummaryView(view)) {
+            return pageResponse(orderService.getOrderSummaryPage(filter, cursor, pageSize(limit), includeTotal));
+        }
+        if (limit != null) {
+            return pageResponse(orderService.getOrderPage(filter, cursor, limit, includeTotal));
+        }
+        return ResponseEntity.ok(ApiResponse.success(orderService.getOrdersFiltered(filter)));
+    }
+    
+    /**
+     * Page body plus the X-Next-Cursor / X-Total-Count headers
+     */
+    private <T> ResponseEntity<ApiResponse<List<?>>> pageResponse(OrderPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        if (page.getTotalCount() != null) {
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalCount()));
+        }
+        return response.body(ApiResponse.success(page.getContent()));
     }
 }
-
@@ -4,6 +4,7 @@ import com.naturaldrops.dto.request.ChangePasswordRequest;
 import com.naturaldrops.dto.response.ApiResponse;
 import com.naturaldrops.entity.User;
 import com.naturaldrops.exception.UnauthorizedException;
+import com.naturaldrops.security.AuthenticatedPrincipal;
 import com.naturaldrops.service.AuthService;
 import com.naturaldrops.service.UserService;
 import javax.servlet.http.HttpServletRequest;
@@ -28,8 +29,8 @@ public class UserController {
      * Returns true only if user is authenticated and has ADMIN role
      */
     private boolean isAdmin(HttpServletRequest request) {
-        User currentUser = (User) request.getAttribute("currentUser");
-        return currentUser != null && currentUser.getRole() == User.UserRole.admin;
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        return currentUser != null && currentUser.isAdmin();
     }
     
     /**
@@ -37,11 +38,11 @@ public class UserController {
      * Throws UnauthorizedException if not authenticated or not admin
      */
     private void requireAdmin(HttpServletRequest request) {
-        User currentUser = (User) request.getAttribute("currentUser");
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         if (currentUser == null) {
             throw new UnauthorizedException("Not authenticated");
         }
-        if (currentUser.getRole() != User.UserRole.admin) {
+        if (!currentUser.isAdmin()) {
             throw new UnauthorizedException("Access denied. Only administrators can access this resource.");
         }
     }
@@ -50,8 +51,8 @@ public class UserController {
      * Helper method to get current authenticated user
      * Throws UnauthorizedException if not authenticated
      */
-    private User getCurrentUser(HttpServletRequest request) {
-        User currentUser = (User) request.getAttribute("currentUser");
+    private AuthenticatedPrincipal getCurrentUser(HttpServletRequest request) {
+        AuthenticatedPrincipal currentUser = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
         if (currentUser == null) {
             throw new UnauthorizedException("Not authenticated");
         }
@@ -89,7 +90,7 @@ public class UserController {
     @PostMapping
     public ResponseEntity<ApiResponse<User>> createUser(@RequestBody User user, HttpServletRequest request) {
         requireAdmin(request);
-        User currentUser = getCurrentUser(request);
+        AuthenticatedPrincipal currentUser = getCurrentUser(request);
         String createdBy = currentUser.getUsername();
         User createdUser = userService.createUser(user, createdBy);
         return ResponseEntity.ok(ApiResponse.success("User created successfully", createdUser));
@@ -111,7 +112,7 @@ public class UserController {
     
     @PostMapping("/change-password")
     public ResponseEntity<ApiResponse<Object>> changePassword(@Valid @RequestBody ChangePasswordRequest request, HttpServletRequest httpRequest) {
-        User currentUser = getCurrentUser(httpRequest);
+        AuthenticatedPrincipal currentUser = getCurrentUser(httpRequest);
         authService.changePassword(currentUser.getId(), request);
         return ResponseEntity.ok(ApiResponse.success("Password changed successfully", null));
     }
@@ -0,0 +1,27 @@
+package com.naturaldrops.dto.request;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Body of the bulk order endpoints (/api/orders/bulk/confirm, on-the-way, cancel, deliver)
+ */
+@Data
+public class BulkOrderActionRequest {
+    
+    @NotEmpty(message = "Order IDs are required")
+    @Size(max = 200, message = "At most 200 orders can be updated in one request")
+    private List<Long> orderIds;
+    
+    private String changedBy;
+    
+    // Cancel only
+    private String reason;
+    
+    // On the way only (deliveryTime = legacy minutes field)
+    private Long deliveryTotalSeconds;
+    private Integer deliveryTime;
+}
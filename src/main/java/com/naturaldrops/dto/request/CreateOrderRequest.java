@@ -23,7 +23,7 @@ public class CreateOrderRequest {
     private Double latitude;
     private Double longitude;
     
-    @NotNull(message = "Total is required")
+    // Total shown at checkout; informational only, the server recomputes it from catalog prices
     private BigDecimal total;
     
     @NotEmpty(message = "Order must contain at least one item")
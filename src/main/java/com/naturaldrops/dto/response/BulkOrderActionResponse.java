@@ -0,0 +1,31 @@
+package com.naturaldrops.dto.response;
+
+import com.naturaldrops.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Per-order outcome of a bulk order action; one failing order does not fail the others
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderActionResponse {
+    private int requested;
+    private int succeeded;
+    private int failed;
+    private List<Result> results;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private Long orderId;
+        private boolean success;
+        private Order.OrderStatus status;
+        private String error;
+    }
+}
@@ -0,0 +1,26 @@
+package com.naturaldrops.dto.response;
+
+import com.naturaldrops.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Compact "order changed" event sent on /api/orders/stream - clients refetch the order if they need more
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderChangeEvent {
+    private String change; // created, updated
+    private Long orderId;
+    private Long buyerId;
+    private Order.OrderStatus status;
+    private Order.PaymentStatus paymentStatus;
+    private BigDecimal total;
+    private BigDecimal finalBillAmount;
+    private LocalDateTime changedAt;
+}
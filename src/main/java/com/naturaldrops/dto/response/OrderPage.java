@@ -0,0 +1,20 @@
+package com.naturaldrops.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of results. nextCursor is null on the last page;
+ * totalCount is only filled when the caller asked for it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private Long totalCount;
+}
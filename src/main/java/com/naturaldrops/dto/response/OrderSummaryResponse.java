@@ -0,0 +1,27 @@
+package com.naturaldrops.dto.response;
+
+import com.naturaldrops.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only row for order list views (?view=summary) - no items collection
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryResponse {
+    private Long id;
+    private Long buyerId;
+    private String buyerName;
+    private Order.OrderStatus status;
+    private BigDecimal total;
+    private LocalDateTime orderDate;
+    private Order.PaymentStatus paymentStatus;
+    private Integer itemCount;
+    private String firstItemName;
+}
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class BuyerNotification {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "buyer_notifications_seq")
+    @SequenceGenerator(name = "buyer_notifications_seq", sequenceName = "buyer_notifications_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "buyer_id", nullable = false)
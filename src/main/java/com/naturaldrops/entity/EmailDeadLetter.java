@@ -0,0 +1,45 @@
+package com.naturaldrops.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email that could not be delivered after all retry attempts (kept for inspection until
+ * TokenMaintenanceService purges it). The body is stored redacted.
+ */
+@Entity
+@Table(name = "email_dead_letters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailDeadLetter {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "to_address", nullable = false, length = 255)
+    private String toAddress;
+    
+    @Column(nullable = false, length = 255)
+    private String subject;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+    
+    @Column(nullable = false)
+    private Integer attempts;
+    
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    @Column(name = "queued_at", nullable = false)
+    private LocalDateTime queuedAt;
+    
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
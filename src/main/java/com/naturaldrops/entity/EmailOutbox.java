@@ -0,0 +1,55 @@
+package com.naturaldrops.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email waiting to be sent by EmailDispatcher. Rows are deleted once sent,
+ * or moved to email_dead_letters after the last failed attempt.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+    @Index(name = "idx_email_outbox_next_attempt", columnList = "next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "to_address", nullable = false, length = 255)
+    private String toAddress;
+    
+    @Column(nullable = false, length = 255)
+    private String subject;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.naturaldrops.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of an order creation made with an Idempotency-Key header.
+ * Retries with the same key (from the same user) replay the stored order instead of
+ * creating a new one until expires_at; expired rows are purged by TokenMaintenanceService.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+    @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // SHA-256 of "<user id>:<Idempotency-Key>", so client keys of any length fit one indexed column
+    @Column(name = "idempotency_key", nullable = false, unique = true, length = 64)
+    private String idempotencyKey;
+    
+    // SHA-256 of the request body, to reject a reused key with a different request
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+    
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
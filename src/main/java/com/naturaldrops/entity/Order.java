@@ -11,14 +11,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    // Keyset pagination (orderDate DESC, id DESC), optionally narrowed by status or buyer
+    @Index(name = "idx_orders_date_id", columnList = "order_date, id"),
+    @Index(name = "idx_orders_status_date_id", columnList = "status, order_date, id"),
+    @Index(name = "idx_orders_buyer_date_id", columnList = "buyer_id, order_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "buyer_id", nullable = false)
@@ -98,6 +104,11 @@ public class Order {
     @Column(name = "billing_notes", columnDefinition = "TEXT")
     private String billingNotes;
     
+    // Optimistic lock: bumped on every update, exposed to clients as the order's ETag
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<OrderItem> items = new ArrayList<>();
     
@@ -0,0 +1,65 @@
+package com.naturaldrops.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Buyer notification for an order status change, written in the same transaction as the change
+ * and delivered (in-app notification + push) by OrderEventDispatcher after commit.
+ * Rows are deleted once delivered; events of one order are delivered in id order.
+ */
+@Entity
+@Table(name = "order_events", indexes = {
+    @Index(name = "idx_order_events_next_attempt", columnList = "next_attempt_at"),
+    @Index(name = "idx_order_events_order_id", columnList = "order_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+    
+    @Column(name = "buyer_id", nullable = false)
+    private Long buyerId;
+    
+    @Column(nullable = false, length = 50)
+    private String status;
+    
+    // Message built from the order as it was at the status change
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String message;
+    
+    // The buyer_notifications row is created on the first attempt; retries only resend the push
+    @Column(name = "notification_created", nullable = false)
+    private Boolean notificationCreated = false;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -21,8 +21,9 @@ public class RefreshToken {
     @Column(name = "user_id", nullable = false)
     private Long userId;
     
-    @Column(nullable = false, unique = true, length = 500)
-    private String token;
+    // SHA-256 hex digest of the refresh JWT; rows issued before digests may still hold the raw token
+    @Column(name = "token", nullable = false, unique = true, length = 64)
+    private String tokenDigest;
     
     @Column(name = "expiry_time", nullable = false)
     private LocalDateTime expiryTime;
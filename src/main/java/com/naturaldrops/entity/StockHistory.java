@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class StockHistory {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_history_seq")
+    @SequenceGenerator(name = "stock_history_seq", sequenceName = "stock_history_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "menu_item_id", nullable = false)
@@ -95,6 +95,11 @@ public class User {
     @Column(name = "device_token", columnDefinition = "TEXT")
     private String deviceToken;
     
+    // Bumped whenever previously issued sessions must stop working (deactivation, role change, ...)
+    @JsonIgnore
+    @Column(name = "token_epoch", nullable = true) // Nullable so existing rows migrate cleanly, null is treated as 0
+    private Long tokenEpoch = 0L;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
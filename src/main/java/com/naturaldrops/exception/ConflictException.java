@@ -0,0 +1,11 @@
+package com.naturaldrops.exception;
+
+/**
+ * Exception thrown when a request conflicts with the current state of a resource
+ * (e.g. an Idempotency-Key reused for a different request). Mapped to 409 Conflict.
+ */
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
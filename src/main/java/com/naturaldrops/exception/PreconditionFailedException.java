@@ -0,0 +1,11 @@
+package com.naturaldrops.exception;
+
+/**
+ * Exception thrown when a conditional request no longer matches the resource
+ * (e.g. If-Match with an outdated order ETag). Mapped to 412 Precondition Failed.
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
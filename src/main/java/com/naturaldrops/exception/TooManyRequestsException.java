@@ -0,0 +1,18 @@
+package com.naturaldrops.exception;
+
+/**
+ * Exception thrown when a bounded resource (worker pool, rate limit) is saturated.
+ * Mapped to 429 Too Many Requests with a Retry-After header.
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+    
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
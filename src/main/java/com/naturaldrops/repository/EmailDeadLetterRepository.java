@@ -0,0 +1,23 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.EmailDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface EmailDeadLetterRepository extends JpaRepository<EmailDeadLetter, Long> {
+    
+    /**
+     * Delete at most :limit dead letters that failed before :before (one bounded chunk for TokenMaintenanceService)
+     */
+    @Modifying
+    @Query(value = "DELETE FROM email_dead_letters WHERE id IN (" +
+            "SELECT id FROM email_dead_letters WHERE failed_at <= :before LIMIT :limit)",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
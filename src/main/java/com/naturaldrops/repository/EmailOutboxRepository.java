@@ -0,0 +1,21 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+    
+    /**
+     * Lock the next due emails; rows already claimed by another worker/instance are skipped
+     */
+    @Query(value = "SELECT * FROM email_outbox WHERE next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutbox> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -0,0 +1,34 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    
+    @Query("SELECT r FROM IdempotencyRecord r WHERE r.idempotencyKey = :key AND r.expiresAt > :now")
+    Optional<IdempotencyRecord> findValidByKey(@Param("key") String key, @Param("now") LocalDateTime now);
+    
+    /**
+     * Drop an expired record for this key (not purged yet) so the key can be used again
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :key AND r.expiresAt <= :now")
+    int deleteExpiredByKey(@Param("key") String key, @Param("now") LocalDateTime now);
+    
+    /**
+     * Delete at most :limit expired records (one bounded chunk for TokenMaintenanceService)
+     */
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE id IN (" +
+            "SELECT id FROM idempotency_keys WHERE expires_at <= :now LIMIT :limit)",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,5 +40,16 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
     @EntityGraph(attributePaths = {"images", "videos"})
     @Query("SELECT DISTINCT m FROM MenuItem m WHERE m.id = :id")
     Optional<MenuItem> findByIdWithMedia(@Param("id") Long id);
+    
+    // Name and rate only (no media, no entity) for pricing orders; one statement, so all lines of an
+    // order are priced from the same snapshot of the catalog
+    @Query("SELECT m.id AS id, m.name AS name, m.rate AS rate FROM MenuItem m WHERE m.id IN :ids")
+    List<MenuItemPrice> findPricesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    interface MenuItemPrice {
+        Long getId();
+        String getName();
+        BigDecimal getRate();
+    }
 }
 
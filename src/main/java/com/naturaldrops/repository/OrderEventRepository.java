@@ -0,0 +1,23 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.OrderEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+    
+    /**
+     * Lock the next due events, only the oldest pending event of each order (so one order's
+     * notifications are never delivered out of order); rows claimed by another worker are skipped
+     */
+    @Query(value = "SELECT * FROM order_events e WHERE e.next_attempt_at <= :now " +
+            "AND NOT EXISTS (SELECT 1 FROM order_events p WHERE p.order_id = e.order_id AND p.id < e.id) " +
+            "ORDER BY e.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OrderEvent> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -7,19 +7,11 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
-    
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.buyerId = :buyerId ORDER BY o.orderDate DESC")
-    List<Order> findByBuyerIdOrderByOrderDateDesc(@Param("buyerId") Long buyerId);
-    
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.status = :status ORDER BY o.orderDate DESC")
-    List<Order> findByStatusOrderByOrderDateDesc(@Param("status") Order.OrderStatus status);
-    
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.buyerId = :buyerId AND o.status = :status ORDER BY o.orderDate DESC")
-    List<Order> findByBuyerIdAndStatusOrderByOrderDateDesc(@Param("buyerId") Long buyerId, @Param("status") Order.OrderStatus status);
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
     
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.orderDate >= :date ORDER BY o.orderDate DESC")
     List<Order> findByOrderDateAfterOrderByOrderDateDesc(@Param("date") LocalDateTime date);
@@ -27,16 +19,80 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.orderDate >= :startDate AND o.orderDate <= :endDate ORDER BY o.orderDate DESC")
     List<Order> findOrdersBetweenDates(@Param("startDate") LocalDateTime startDate, 
                                         @Param("endDate") LocalDateTime endDate);
-
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.status = :status AND o.orderDate >= :startDate AND o.orderDate <= :endDate ORDER BY o.orderDate DESC")
-    List<Order> findOrdersByStatusBetweenDates(@Param("status") Order.OrderStatus status,
-                                               @Param("startDate") LocalDateTime startDate,
-                                               @Param("endDate") LocalDateTime endDate);
     
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items ORDER BY o.orderDate DESC")
     List<Order> findAllByOrderByOrderDateDesc();
     
     @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id = :id")
     java.util.Optional<Order> findByIdWithItems(@Param("id") Long id);
+    
+    // Filtered id pages, counts and lists are built in OrderRepositoryCustomImpl; the page's orders
+    // are then loaded with their items in a single query.
+    
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Summary rows for list views: item count and first item name aggregated in the same query,
+    // without loading the items collection. The aggregate is per order in a LATERAL subquery (it always
+    // returns one row) rather than GROUP BY o.id, which is only valid while id alone is the primary key -
+    // not on the partitioned table, whose key is (id, order_date).
+    @Query(value = "SELECT o.id, o.buyer_id, o.buyer_name, o.status, o.total, o.order_date, o.payment_status, " +
+            "i.item_count, i.first_item_name " +
+            "FROM orders o CROSS JOIN LATERAL (" +
+            "SELECT COUNT(*) AS item_count, (ARRAY_AGG(item_name ORDER BY id))[1] AS first_item_name " +
+            "FROM order_items WHERE order_id = o.id) i " +
+            "WHERE o.id IN (:ids)", nativeQuery = true)
+    List<Object[]> findSummaryRowsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Order search: case-insensitive substring match over buyer name, phone, delivery address and
+    // tracking number. SEARCH_DOCUMENT must stay identical to the expression of the trigram index
+    // (idx_orders_search_trgm, migration V3) or the index is not used.
+    
+    String SEARCH_DOCUMENT = "lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' || " +
+            "coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, ''))";
+    
+    @Query(value = "SELECT id FROM orders WHERE " + SEARCH_DOCUMENT + " LIKE :pattern " +
+            "AND order_date >= :startDate AND order_date <= :endDate " +
+            "AND (order_date < :cursorDate OR (order_date = :cursorDate AND id < :cursorId)) " +
+            "ORDER BY order_date DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Long> searchIdPage(@Param("pattern") String pattern,
+                            @Param("startDate") LocalDateTime startDate,
+                            @Param("endDate") LocalDateTime endDate,
+                            @Param("cursorDate") LocalDateTime cursorDate,
+                            @Param("cursorId") Long cursorId,
+                            @Param("limit") int limit);
+    
+    @Query(value = "SELECT id FROM orders WHERE " + SEARCH_DOCUMENT + " LIKE :pattern AND status = :status " +
+            "AND order_date >= :startDate AND order_date <= :endDate " +
+            "AND (order_date < :cursorDate OR (order_date = :cursorDate AND id < :cursorId)) " +
+            "ORDER BY order_date DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Long> searchIdPageByStatus(@Param("pattern") String pattern,
+                                    @Param("status") String status,
+                                    @Param("startDate") LocalDateTime startDate,
+                                    @Param("endDate") LocalDateTime endDate,
+                                    @Param("cursorDate") LocalDateTime cursorDate,
+                                    @Param("cursorId") Long cursorId,
+                                    @Param("limit") int limit);
+    
+    @Query(value = "SELECT COUNT(*) FROM orders WHERE " + SEARCH_DOCUMENT + " LIKE :pattern " +
+            "AND order_date >= :startDate AND order_date <= :endDate", nativeQuery = true)
+    long countSearch(@Param("pattern") String pattern,
+                     @Param("startDate") LocalDateTime startDate,
+                     @Param("endDate") LocalDateTime endDate);
+    
+    @Query(value = "SELECT COUNT(*) FROM orders WHERE " + SEARCH_DOCUMENT + " LIKE :pattern AND status = :status " +
+            "AND order_date >= :startDate AND order_date <= :endDate", nativeQuery = true)
+    long countSearchByStatus(@Param("pattern") String pattern,
+                             @Param("status") String status,
+                             @Param("startDate") LocalDateTime startDate,
+                             @Param("endDate") LocalDateTime endDate);
+    
+    // Version only, for conditional requests (no entity or items loaded)
+    @Query("SELECT o.version FROM Order o WHERE o.id = :id")
+    java.util.Optional<Long> findVersionById(@Param("id") Long id);
+    
+    // Same, row-locked until the end of the transaction so the version can't change before the update
+    @Query(value = "SELECT version FROM orders WHERE id = :id FOR UPDATE", nativeQuery = true)
+    java.util.Optional<Long> lockVersionById(@Param("id") Long id);
 }
 
@@ -0,0 +1,26 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.util.OrderCursor;
+import com.naturaldrops.util.OrderFilter;
+
+import java.util.List;
+
+/**
+ * Order queries built from an OrderFilter (any combination of its criteria) as one statement each,
+ * instead of a repository method per combination
+ */
+public interface OrderRepositoryCustom {
+    
+    /**
+     * Ids of the orders after the cursor in the filter's sort order, at most limit of them
+     */
+    List<Long> findIdPage(OrderFilter filter, OrderCursor cursor, int limit);
+    
+    long countFiltered(OrderFilter filter);
+    
+    /**
+     * All matching orders with their items, in the filter's sort order (unpaged list endpoints and exports)
+     */
+    List<Order> findAllWithItems(OrderFilter filter);
+}
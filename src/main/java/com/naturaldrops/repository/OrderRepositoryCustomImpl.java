@@ -0,0 +1,128 @@
+package com.naturaldrops.repository;
+
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.util.OrderCursor;
+import com.naturaldrops.util.OrderFilter;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria implementation of OrderRepositoryCustom. Only the given criteria end up in the WHERE clause
+ * (values are bound as parameters, see hibernate.criteria.literal_handling_mode), so each query stays
+ * on one of the orders indexes: (status, order_date, id), (buyer_id, order_date, id) or (order_date, id).
+ * Payment status and delivery partner are applied on top of the index range.
+ */
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<Long> findIdPage(OrderFilter filter, OrderCursor cursor, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Order> order = query.from(Order.class);
+        
+        List<Predicate> predicates = toPredicates(cb, order, filter);
+        if (cursor != null && cursor != OrderCursor.START) {
+            predicates.add(afterCursor(cb, order, cursor, filter.getSort()));
+        }
+        query.select(order.get("id"))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(sortOrder(cb, order, filter.getSort()));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    @Override
+    public long countFiltered(OrderFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Order> order = query.from(Order.class);
+        query.select(cb.count(order))
+                .where(toPredicates(cb, order, filter).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+    
+    @Override
+    public List<Order> findAllWithItems(OrderFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Order> query = cb.createQuery(Order.class);
+        Root<Order> order = query.from(Order.class);
+        order.fetch("items", JoinType.LEFT);
+        query.select(order)
+                .distinct(true)
+                .where(toPredicates(cb, order, filter).toArray(new Predicate[0]))
+                .orderBy(sortOrder(cb, order, filter.getSort()));
+        // DISTINCT only de-duplicates the fetch-joined rows in memory, the SQL doesn't need it
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .getResultList();
+    }
+    
+    private static List<Predicate> toPredicates(CriteriaBuilder cb, Root<Order> order, OrderFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getStatuses() != null && !filter.getStatuses().isEmpty()) {
+            if (filter.getStatuses().size() == 1) {
+                predicates.add(cb.equal(order.get("status"), filter.getStatuses().iterator().next()));
+            } else {
+                predicates.add(order.get("status").in(filter.getStatuses()));
+            }
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(order.get("orderDate"), filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(order.get("orderDate"), filter.getTo()));
+        }
+        if (filter.getBuyerId() != null) {
+            predicates.add(cb.equal(order.get("buyerId"), filter.getBuyerId()));
+        }
+        if (filter.getPaymentStatus() != null) {
+            predicates.add(cb.equal(order.get("paymentStatus"), filter.getPaymentStatus()));
+        }
+        if (filter.getDeliveryPartner() != null) {
+            predicates.add(cb.equal(cb.lower(order.get("deliveryPartner")), filter.getDeliveryPartner().toLowerCase()));
+        }
+        return predicates;
+    }
+    
+    /**
+     * Strictly after the cursor: (orderDate, id) below it for newest first, above it for oldest first
+     */
+    private static Predicate afterCursor(CriteriaBuilder cb, Root<Order> order, OrderCursor cursor, OrderFilter.Sort sort) {
+        Path<LocalDateTime> orderDate = order.get("orderDate");
+        Path<Long> id = order.get("id");
+        if (sort == OrderFilter.Sort.oldest) {
+            return cb.or(cb.greaterThan(orderDate, cursor.getOrderDate()),
+                    cb.and(cb.equal(orderDate, cursor.getOrderDate()), cb.greaterThan(id, cursor.getId())));
+        }
+        return cb.or(cb.lessThan(orderDate, cursor.getOrderDate()),
+                cb.and(cb.equal(orderDate, cursor.getOrderDate()), cb.lessThan(id, cursor.getId())));
+    }
+    
+    private static List<javax.persistence.criteria.Order> sortOrder(CriteriaBuilder cb, Root<Order> order,
+                                                                    OrderFilter.Sort sort) {
+        List<javax.persistence.criteria.Order> orderBy = new ArrayList<>(2);
+        if (sort == OrderFilter.Sort.oldest) {
+            orderBy.add(cb.asc(order.get("orderDate")));
+            orderBy.add(cb.asc(order.get("id")));
+        } else {
+            orderBy.add(cb.desc(order.get("orderDate")));
+            orderBy.add(cb.desc(order.get("id")));
+        }
+        return orderBy;
+    }
+}
@@ -16,13 +16,19 @@ public interface PasswordResetTokenRepository extends JpaRepository<PasswordRese
     
     Optional<PasswordResetToken> findByToken(String token);
     
-    Optional<PasswordResetToken> findByOtp(String otp);
+    // OTPs are only 6 digits and old rows are purged in the background, so pick the newest match
+    Optional<PasswordResetToken> findFirstByOtpOrderByIdDesc(String otp);
     
     @Query("SELECT prt FROM PasswordResetToken prt WHERE prt.userId = :userId AND prt.used = false AND prt.expiryTime > :now")
     List<PasswordResetToken> findByUserIdAndNotUsed(@Param("userId") Long userId, @Param("now") LocalDateTime now);
     
+    /**
+     * Delete at most :limit expired or used tokens (one bounded chunk for TokenMaintenanceService)
+     */
     @Modifying
-    @Query("DELETE FROM PasswordResetToken prt WHERE prt.expiryTime < :now OR prt.used = true")
-    void deleteExpiredTokens(@Param("now") LocalDateTime now);
+    @Query(value = "DELETE FROM password_reset_tokens WHERE id IN (" +
+            "SELECT id FROM password_reset_tokens WHERE expiry_time < :now OR used = true LIMIT :limit)",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
 
@@ -8,12 +8,15 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
     
-    Optional<RefreshToken> findByToken(String token);
+    Optional<RefreshToken> findByTokenDigest(String tokenDigest);
+    
+    List<RefreshToken> findByUserId(Long userId);
     
     @Query("SELECT rt FROM RefreshToken rt WHERE rt.userId = :userId AND rt.revoked = false AND rt.expiryTime > :now")
     Optional<RefreshToken> findValidTokenByUserId(@Param("userId") Long userId, @Param("now") LocalDateTime now);
@@ -22,8 +25,13 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Query("DELETE FROM RefreshToken rt WHERE rt.userId = :userId")
     void deleteByUserId(@Param("userId") Long userId);
     
+    /**
+     * Delete at most :limit expired or revoked tokens (one bounded chunk for TokenMaintenanceService)
+     */
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiryTime < :now OR rt.revoked = true")
-    void deleteExpiredTokens(@Param("now") LocalDateTime now);
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN (" +
+            "SELECT id FROM refresh_tokens WHERE expiry_time < :now OR revoked = true LIMIT :limit)",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
 
@@ -2,7 +2,11 @@ package com.naturaldrops.repository;
 
 import com.naturaldrops.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,5 +21,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByRole(User.UserRole role);
     
     boolean existsByUsername(String username);
+    
+    // Missing users return empty; a null epoch (rows created before the column existed) counts as 0
+    @Query("SELECT COALESCE(u.tokenEpoch, 0) FROM User u WHERE u.id = :id")
+    Optional<Long> findTokenEpochById(@Param("id") Long id);
+    
+    // Flushes pending changes first and clears the context afterwards, so a later save of a
+    // stale User entity cannot write the old epoch back
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.tokenEpoch = COALESCE(u.tokenEpoch, 0) + 1 WHERE u.id = :id")
+    int incrementTokenEpoch(@Param("id") Long id);
 }
-
@@ -0,0 +1,28 @@
+package com.naturaldrops.security;
+
+import com.naturaldrops.entity.User;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Slim view of the authenticated user, set by JwtTokenFilter as the "currentUser" request attribute.
+ * Built from the verified access-token claims, so the filter never loads the users row
+ * on every request; the token epoch ties it to TokenEpochRegistry for revocation.
+ */
+@Getter
+@RequiredArgsConstructor
+public class AuthenticatedPrincipal {
+    
+    public static final String REQUEST_ATTRIBUTE = "currentUser";
+    
+    private final Long id;
+    private final String username;
+    private final User.UserRole role;
+    private final User.UserStatus status;
+    private final Boolean isActive;
+    private final Long tokenEpoch;
+    
+    public boolean isAdmin() {
+        return role == User.UserRole.admin;
+    }
+}
@@ -0,0 +1,160 @@
+package com.naturaldrops.security;
+
+import com.naturaldrops.util.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory set of revoked refresh token digests.
+ * A bloom filter answers "definitely not revoked" for almost every live token without
+ * touching the exact map; a bloom hit is confirmed against the exact map, so there are
+ * no false positives. Entries are dropped once the token would have expired anyway.
+ *
+ * The database stays the source of truth - this only lets reuse of a rotated or
+ * logged-out token be rejected before any DB round trip.
+ */
+@Component
+public class RevokedTokenFilter implements MetricsSource {
+    
+    private static final int HASH_FUNCTIONS = 4;
+    private static final int PURGE_INTERVAL = 1024;
+    
+    private final int bitCount;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray bits;
+    
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder bloomHits = new LongAdder();
+    private final LongAdder confirmedRevoked = new LongAdder();
+    private final LongAdder insertsSincePurge = new LongAdder();
+    
+    public RevokedTokenFilter(@Value("${auth.revoked-tokens.bloom-bits:1048576}") int bitCount) {
+        // Round up to a multiple of 64 so the bit array maps onto whole longs
+        this.bitCount = Math.max(64, (bitCount + 63) & ~63);
+        this.bits = new AtomicLongArray(this.bitCount / 64);
+    }
+    
+    /**
+     * Record a revoked token digest until its expiry time (epoch millis)
+     */
+    public void revoke(String digest, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(digest, expiresAtMillis);
+        setBits(bits, digest);
+        
+        insertsSincePurge.increment();
+        if (insertsSincePurge.sum() >= PURGE_INTERVAL) {
+            purgeExpired();
+        }
+    }
+    
+    public boolean isRevoked(String digest) {
+        checks.increment();
+        if (!mightContain(digest)) {
+            return false;
+        }
+        bloomHits.increment();
+        
+        Long expiresAt = revoked.get(digest);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            revoked.remove(digest, expiresAt);
+            return false;
+        }
+        confirmedRevoked.increment();
+        return true;
+    }
+    
+    /**
+     * Drop expired entries and rebuild the bloom filter from what is left,
+     * since bloom filters cannot delete individual entries.
+     */
+    public synchronized void purgeExpired() {
+        insertsSincePurge.reset();
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Long>> it = revoked.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue() <= now) {
+                it.remove();
+            }
+        }
+        
+        AtomicLongArray rebuilt = new AtomicLongArray(bitCount / 64);
+        for (String digest : revoked.keySet()) {
+            setBits(rebuilt, digest);
+        }
+        bits = rebuilt;
+        // A concurrent revoke() may have set its bits on the old array; it is already
+        // in the map (put happens first), so a second pass after the swap covers it
+        for (String digest : revoked.keySet()) {
+            setBits(rebuilt, digest);
+        }
+    }
+    
+    private boolean mightContain(String digest) {
+        AtomicLongArray current = bits;
+        long h1 = hash(digest, 0);
+        long h2 = hash(digest, 16) | 1L;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((current.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void setBits(AtomicLongArray target, String digest) {
+        long h1 = hash(digest, 0);
+        long h2 = hash(digest, 16) | 1L;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = target.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!target.compareAndSet(index, word, word | mask));
+        }
+    }
+    
+    /**
+     * The digest is already a uniformly distributed SHA-256 hex string,
+     * so 16 hex characters give a usable 64-bit hash directly.
+     */
+    private static long hash(String digest, int offset) {
+        if (digest.length() < offset + 16) {
+            return digest.hashCode() * 0x9E3779B97F4A7C15L + offset;
+        }
+        return Long.parseUnsignedLong(digest.substring(offset, offset + 16), 16);
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "revokedTokens";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", revoked.size());
+        metrics.put("bloomBits", bitCount);
+        metrics.put("checks", checks.sum());
+        metrics.put("bloomHits", bloomHits.sum());
+        metrics.put("confirmedRevoked", confirmedRevoked.sum());
+        return metrics;
+    }
+}
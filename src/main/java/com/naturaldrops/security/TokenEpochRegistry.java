@@ -0,0 +1,88 @@
+package com.naturaldrops.security;
+
+import com.naturaldrops.repository.UserRepository;
+import com.naturaldrops.util.BoundedTtlCache;
+import com.naturaldrops.util.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory table of each user's current token epoch (users.token_epoch), loaded lazily.
+ * Access tokens carry the epoch they were issued under; JwtTokenFilter rejects any token
+ * whose epoch is older than the current one, so bumping the epoch revokes every
+ * outstanding access token of that user without a per-request user lookup.
+ *
+ * Bumps are visible immediately on this instance; other instances pick them up
+ * once their cached entry expires (auth.token-epoch-cache.ttl-seconds).
+ */
+@Component
+public class TokenEpochRegistry implements MetricsSource {
+    
+    /**
+     * Cached marker for users that no longer exist
+     */
+    public static final long USER_NOT_FOUND = -1L;
+    
+    private final UserRepository userRepository;
+    private final BoundedTtlCache<Long, Long> epochs;
+    
+    public TokenEpochRegistry(UserRepository userRepository,
+                              @Value("${auth.token-epoch-cache.max-size:50000}") int maxSize,
+                              @Value("${auth.token-epoch-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.epochs = new BoundedTtlCache<>(maxSize, ttlSeconds * 1000L);
+    }
+    
+    /**
+     * Current epoch of the user, or {@link #USER_NOT_FOUND} if the user does not exist
+     */
+    public long currentEpoch(Long userId) {
+        return epochs.get(userId, id -> userRepository.findTokenEpochById(id).orElse(USER_NOT_FOUND));
+    }
+    
+    /**
+     * Increment the user's epoch, revoking all access tokens issued before now.
+     * Pending changes are flushed and the persistence context is cleared by the update,
+     * so entities re-read afterwards (e.g. to issue a new token) carry the new epoch.
+     */
+    public void bump(Long userId) {
+        userRepository.incrementTokenEpoch(userId);
+        evict(userId);
+    }
+    
+    /**
+     * Drop the cached epoch now and again after the surrounding transaction commits,
+     * so a concurrent request cannot re-cache the pre-commit value.
+     */
+    public void evict(Long userId) {
+        epochs.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    epochs.invalidate(userId);
+                }
+            });
+        }
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "tokenEpochs";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", epochs.size());
+        metrics.put("hits", epochs.getHitCount());
+        metrics.put("misses", epochs.getMissCount());
+        metrics.put("evictions", epochs.getEvictionCount());
+        return metrics;
+    }
+}
@@ -16,16 +16,24 @@ import com.naturaldrops.exception.UnauthorizedException;
 import com.naturaldrops.repository.PasswordResetTokenRepository;
 import com.naturaldrops.repository.RefreshTokenRepository;
 import com.naturaldrops.repository.UserRepository;
+import com.naturaldrops.security.RevokedTokenFilter;
+import com.naturaldrops.security.TokenEpochRegistry;
 import com.naturaldrops.util.JwtTokenProvider;
 import com.naturaldrops.util.PasswordValidator;
+import com.naturaldrops.util.TokenClaims;
+import com.naturaldrops.util.TokenDigest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -39,10 +47,17 @@ public class AuthService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final EmailService emailService;
     private final JwtTokenProvider jwtTokenProvider;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final TokenEpochRegistry tokenEpochRegistry;
+    private final RevokedTokenFilter revokedTokenFilter;
+    private final PasswordHashingService passwordHashingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private static final SecureRandom random = new SecureRandom();
     
-    @Transactional
+    /**
+     * Not transactional as a whole: the password is hashed before any connection is taken, and only the
+     * insert (with the username checked again) runs in a short transaction.
+     */
     public User register(RegisterRequest request) {
         log.info("═══════════════════════════════════════════════════════");
         log.info("🔵 [AuthService] ===== REGISTRATION ATTEMPT STARTED ======");
@@ -52,16 +67,27 @@ public class AuthService {
         log.info("   Timestamp: {}", LocalDateTime.now());
         log.info("═══════════════════════════════════════════════════════");
         
-        // Check if username already exists
-        if (userRepository.existsByUsername(request.getUsername())) {
+        // Check if username already exists (plain JDBC, so a taken username costs no hash)
+        if (usernameExists(request.getUsername())) {
             log.warn("❌ [AuthService] Registration failed - Username already exists: {}", request.getUsername());
             throw new IllegalArgumentException("Username already exists");
         }
         log.info("✅ [AuthService] Username available");
         
+        String passwordHash = passwordHashingService.encode(request.getPassword());
+        return transactionTemplate.execute(status -> createRegisteredUser(request, passwordHash));
+    }
+    
+    private User createRegisteredUser(RegisterRequest request, String passwordHash) {
+        // Taken by another registration while the password was being hashed
+        if (userRepository.existsByUsername(request.getUsername())) {
+            log.warn("❌ [AuthService] Registration failed - Username already exists: {}", request.getUsername());
+            throw new IllegalArgumentException("Username already exists");
+        }
+        
         User user = new User();
         user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHash);
         user.setRole(request.getRole());
         user.setEmail(request.getEmail());
         user.setPhone(request.getPhone());
@@ -130,7 +156,12 @@ public class AuthService {
         return savedUser;
     }
     
-    @Transactional
+    /**
+     * Not transactional as a whole: the credentials are read with a plain JDBC query, so the connection
+     * goes straight back to the pool (a repository read would stay bound to the request's EntityManager
+     * under open-in-view), and the BCrypt check runs with no connection held. Only the status updates and
+     * token issuance afterwards run in a transaction.
+     */
     public LoginResponse login(LoginRequest request) {
         log.info("═══════════════════════════════════════════════════════");
         log.info("🔵 [AuthService] ===== LOGIN ATTEMPT STARTED ======");
@@ -138,27 +169,73 @@ public class AuthService {
         log.info("   Timestamp: {}", java.time.LocalDateTime.now());
         log.info("═══════════════════════════════════════════════════════");
         
-        User user = userRepository.findByUsername(request.getUsername())
+        LoginCredentials credentials = findLoginCredentials(request.getUsername())
                 .orElseThrow(() -> {
                     log.warn("❌ [AuthService] Login failed - User not found: {}", request.getUsername());
                     return new UnauthorizedException("Invalid username or password");
                 });
         
         log.info("✅ [AuthService] User found in database");
-        log.info("   User ID: {}", user.getId());
+        log.info("   User ID: {}", credentials.userId);
+        
+        if (!passwordHashingService.matches(request.getPassword(), credentials.passwordHash)) {
+            log.warn("❌ [AuthService] Login failed - Invalid password for user: {}", request.getUsername());
+            throw new UnauthorizedException("Invalid username or password");
+        }
+        
+        log.info("✅ [AuthService] Password verification passed");
+        
+        // Re-hash with the current BCrypt cost if the stored hash is weaker (saved with the login update)
+        String upgradedHash = passwordHashingService.needsUpgrade(credentials.passwordHash)
+                ? passwordHashingService.upgrade(request.getPassword())
+                : null;
+        
+        return transactionTemplate.execute(status -> completeLogin(credentials, upgradedHash));
+    }
+    
+    private boolean usernameExists(String username) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE username = ?)", Boolean.class, username));
+    }
+    
+    private Optional<String> findPasswordHash(Long userId) {
+        return jdbcTemplate.queryForList("SELECT password FROM users WHERE id = ?", String.class, userId)
+                .stream().findFirst();
+    }
+    
+    private Optional<LoginCredentials> findLoginCredentials(String username) {
+        return jdbcTemplate.query(
+                "SELECT id, password FROM users WHERE username = ?",
+                (rs, rowNum) -> new LoginCredentials(rs.getLong("id"), rs.getString("password")),
+                username).stream().findFirst();
+    }
+    
+    /**
+     * Second half of login, after the password check: account status checks and updates, session
+     * revocation and token issuance, in one transaction.
+     */
+    private LoginResponse completeLogin(LoginCredentials credentials, String upgradedHash) {
+        User user = userRepository.findById(credentials.userId)
+                .orElseThrow(() -> new UnauthorizedException("Invalid username or password"));
+        
+        // The password was changed between the check and this transaction
+        if (!credentials.passwordHash.equals(user.getPassword())) {
+            log.warn("❌ [AuthService] Login failed - Password changed during login for user: {}", user.getUsername());
+            throw new UnauthorizedException("Invalid username or password");
+        }
+        
         log.info("   Username: {}", user.getUsername());
         log.info("   Role: {}", user.getRole());
         log.info("   Email: {}", user.getEmail() != null ? user.getEmail() : "N/A");
         log.info("   Current isActive: {}", user.getIsActive());
         log.info("   Current status: {}", user.getStatus());
         
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            log.warn("❌ [AuthService] Login failed - Invalid password for user: {}", request.getUsername());
-            throw new UnauthorizedException("Invalid username or password");
+        if (upgradedHash != null) {
+            user.setPassword(upgradedHash);
+            userRepository.save(user);
+            log.info("✅ [AuthService] Password hash upgraded to current cost");
         }
         
-        log.info("✅ [AuthService] Password verification passed");
-        
         // CRITICAL: Check isActive FIRST (primary control for ACTIVE/DEACTIVE)
         // Admin always has full access, regardless of isActive status
         // Only Seller and Buyer accounts are subject to isActive check
@@ -239,7 +316,7 @@ public class AuthService {
         // Only APPROVED AND ACTIVE users can proceed (Admin is always allowed)
         log.info("🔍 [AuthService] Proceeding with token generation...");
         
-        // Revoke any existing refresh tokens for this user (single active session)
+        // Revoke any existing refresh tokens and access tokens for this user (single active session)
         log.info("🔄 [AuthService] Revoking existing refresh tokens for user: {}", user.getId());
         revokeUserRefreshTokens(user.getId());
         log.info("✅ [AuthService] Existing refresh tokens revoked");
@@ -260,17 +337,11 @@ public class AuthService {
         // Generate tokens
         log.info("🔑 [AuthService] Generating JWT tokens...");
         String accessToken = jwtTokenProvider.generateAccessToken(user);
-        String refreshTokenString = jwtTokenProvider.generateRefreshToken(user);
         log.info("✅ [AuthService] JWT tokens generated successfully");
         
-        // Save new refresh token to database
+        // Save new refresh token (digest only) to database
         log.info("💾 [AuthService] Saving refresh token to database...");
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUserId(user.getId());
-        refreshToken.setToken(refreshTokenString);
-        refreshToken.setExpiryTime(LocalDateTime.now().plusDays(7)); // 7 days to match jwt.refresh-token-expiration
-        refreshToken.setRevoked(false);
-        refreshTokenRepository.save(refreshToken);
+        String refreshTokenString = issueRefreshToken(user);
         log.info("✅ [AuthService] Refresh token saved to database");
         
         // Log user status for debugging
@@ -290,16 +361,26 @@ public class AuthService {
     
     @Transactional
     public RefreshTokenResponse refreshToken(RefreshTokenRequest request) {
-        // Validate refresh token JWT
-        if (!jwtTokenProvider.validateToken(request.getRefreshToken())) {
+        // Verify the refresh JWT once and make sure it really is a refresh token
+        TokenClaims claims = jwtTokenProvider.parseToken(request.getRefreshToken());
+        if (claims == null || !claims.isRefreshToken()) {
             throw new UnauthorizedException("Invalid or expired refresh token");
         }
         
+        // Reused (already rotated / logged out) tokens are rejected without a DB round trip
+        String digest = TokenDigest.sha256Hex(request.getRefreshToken());
+        if (revokedTokenFilter.isRevoked(digest)) {
+            throw new UnauthorizedException("Refresh token has been revoked");
+        }
+        
         // Check if refresh token exists in database and is not revoked
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(request.getRefreshToken())
-                .orElseThrow(() -> new UnauthorizedException("Refresh token not found"));
+        // (fall back to the raw token for rows stored before digests were introduced)
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenDigest(digest)
+                .orElseGet(() -> refreshTokenRepository.findByTokenDigest(request.getRefreshToken())
+                        .orElseThrow(() -> new UnauthorizedException("Refresh token not found")));
         
         if (refreshToken.getRevoked()) {
+            revokedTokenFilter.revoke(digest, toEpochMillis(refreshToken.getExpiryTime()));
             throw new UnauthorizedException("Refresh token has been revoked");
         }
         
@@ -314,20 +395,13 @@ public class AuthService {
         // Generate new access token
         String newAccessToken = jwtTokenProvider.generateAccessToken(user);
         
-        // Optionally generate new refresh token (refresh token rotation)
-        String newRefreshTokenString = jwtTokenProvider.generateRefreshToken(user);
-        
-        // Revoke old refresh token
+        // Revoke old refresh token (refresh token rotation)
         refreshToken.setRevoked(true);
         refreshTokenRepository.save(refreshToken);
+        revokedTokenFilter.revoke(digest, claims.getExpiration().getTime());
         
         // Save new refresh token
-        RefreshToken newRefreshToken = new RefreshToken();
-        newRefreshToken.setUserId(user.getId());
-        newRefreshToken.setToken(newRefreshTokenString);
-        newRefreshToken.setExpiryTime(LocalDateTime.now().plusDays(7)); // 7 days to match jwt.refresh-token-expiration
-        newRefreshToken.setRevoked(false);
-        refreshTokenRepository.save(newRefreshToken);
+        String newRefreshTokenString = issueRefreshToken(user);
         
         return new RefreshTokenResponse(newAccessToken, newRefreshTokenString);
     }
@@ -340,17 +414,51 @@ public class AuthService {
     
     @Transactional
     public void revokeUserRefreshTokens(Long userId) {
-        // Delete all existing refresh tokens for this user
-        refreshTokenRepository.deleteByUserId(userId);
+        // Remember the digests in memory so reuse is rejected cheaply, then delete the rows
+        List<RefreshToken> tokens = refreshTokenRepository.findByUserId(userId);
+        for (RefreshToken token : tokens) {
+            revokedTokenFilter.revoke(TokenDigest.ofStoredValue(token.getTokenDigest()),
+                    toEpochMillis(token.getExpiryTime()));
+        }
+        if (!tokens.isEmpty()) {
+            refreshTokenRepository.deleteByUserId(userId);
+        }
+        
+        // Bump the token epoch so access tokens already handed out stop working too
+        tokenEpochRegistry.bump(userId);
     }
     
-    @Transactional
+    /**
+     * Generate a refresh token for the user and store only its SHA-256 digest
+     */
+    private String issueRefreshToken(User user) {
+        String refreshTokenString = jwtTokenProvider.generateRefreshToken(user);
+        
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUserId(user.getId());
+        refreshToken.setTokenDigest(TokenDigest.sha256Hex(refreshTokenString));
+        refreshToken.setExpiryTime(LocalDateTime.now().plusDays(7)); // 7 days to match jwt.refresh-token-expiration
+        refreshToken.setRevoked(false);
+        refreshTokenRepository.save(refreshToken);
+        
+        return refreshTokenString;
+    }
+    
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Not transactional as a whole, like login: the old password is checked and the new one hashed with no
+     * connection held. The update runs in a short transaction that makes sure the stored hash is still the
+     * one the old password was checked against.
+     */
     public void changePassword(Long userId, ChangePasswordRequest request) {
-        User user = userRepository.findById(userId)
+        String currentHash = findPasswordHash(userId)
                 .orElseThrow(() -> new UnauthorizedException("User not found"));
         
         // Verify old password
-        if (!passwordEncoder.matches(request.getOldPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getOldPassword(), currentHash)) {
             throw new UnauthorizedException("The current password you entered is incorrect. Please try again.");
         }
         
@@ -365,9 +473,24 @@ public class AuthService {
             throw new IllegalArgumentException(validationResult.getMessage());
         }
         
-        // Encode and update password
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-        userRepository.save(user);
+        String newHash = passwordHashingService.encode(request.getNewPassword());
+        
+        transactionTemplate.execute(status -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new UnauthorizedException("User not found"));
+            
+            // Changed or reset meanwhile: the old password was checked against a hash that is gone
+            if (!currentHash.equals(user.getPassword())) {
+                throw new UnauthorizedException("The current password you entered is incorrect. Please try again.");
+            }
+            
+            user.setPassword(newHash);
+            userRepository.save(user);
+            
+            // Sign out every session that used the old password
+            revokeUserRefreshTokens(userId);
+            return null;
+        });
     }
     
     @Transactional
@@ -379,9 +502,7 @@ public class AuthService {
         if (userOptional.isPresent()) {
             User user = userOptional.get();
             
-            // Delete any existing unused tokens for this user
-            passwordResetTokenRepository.deleteExpiredTokens(LocalDateTime.now());
-            
+            // Expired / used tokens are purged in the background by TokenMaintenanceService
             // Generate token and OTP
             String token = UUID.randomUUID().toString();
             String otp = generateOtp();
@@ -401,21 +522,26 @@ public class AuthService {
                     ? user.getFullName() 
                     : user.getUsername();
             
-            // Send email with both token and OTP, including user's name for personalization
+            // Queue email with both token and OTP, including user's name for personalization
+            // (sent by EmailDispatcher after this transaction commits - no SMTP wait here)
             // If email fails, still return success (security best practice - don't reveal if email exists)
             // The token/OTP is still created, so user can reset password if they know the OTP
             boolean emailSent = emailService.sendPasswordResetToken(user.getEmail(), userName, token, otp);
             if (!emailSent) {
                 // SECURITY: Do NOT log token or OTP - they are sensitive
-                log.warn("Password reset token created for user {} but email failed to send. " +
-                        "Token and OTP are available in database but email delivery failed.", user.getEmail());
+                log.warn("Password reset token created for user {} but email could not be queued. " +
+                        "Token and OTP are available in database but email is not configured.", user.getEmail());
             }
         }
         
         // Always return success message (security best practice - don't reveal if email exists)
     }
     
-    @Transactional
+    /**
+     * Not transactional as a whole: the reset token is looked up with a plain JDBC query and the new
+     * password hashed with no connection held. The update runs in a short transaction that claims the
+     * token (used = false -> true) first, so a token can still only be used once.
+     */
     public void resetPassword(ResetPasswordRequest request) {
         // Validate that either token or OTP is provided
         if ((request.getToken() == null || request.getToken().trim().isEmpty()) &&
@@ -424,14 +550,7 @@ public class AuthService {
         }
         
         // Find token by token or OTP
-        Optional<PasswordResetToken> tokenOptional = Optional.empty();
-        if (request.getToken() != null && !request.getToken().trim().isEmpty()) {
-            tokenOptional = passwordResetTokenRepository.findByToken(request.getToken());
-        } else if (request.getOtp() != null && !request.getOtp().trim().isEmpty()) {
-            tokenOptional = passwordResetTokenRepository.findByOtp(request.getOtp());
-        }
-        
-        PasswordResetToken resetToken = tokenOptional
+        PasswordResetToken resetToken = findResetToken(request)
                 .orElseThrow(() -> new UnauthorizedException("Invalid or expired reset token/OTP"));
         
         // Check if token is already used
@@ -439,11 +558,6 @@ public class AuthService {
             throw new UnauthorizedException("This reset token/OTP has already been used");
         }
         
-        // Check if token is expired
-        if (resetToken.getExpiryTime().isBefore(LocalDateTime.now())) {
-            throw new UnauthorizedException("Reset token/OTP has expired");
-        }
-        
         // Validate new password matches confirm password
         if (!request.getNewPassword().equals(request.getConfirmPassword())) {
             throw new IllegalArgumentException("New password and confirm password do not match");
@@ -455,19 +569,56 @@ public class AuthService {
             throw new IllegalArgumentException(validationResult.getMessage());
         }
         
-        // Get user and update password
-        User user = userRepository.findById(resetToken.getUserId())
-                .orElseThrow(() -> new UnauthorizedException("User not found"));
-        
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-        userRepository.save(user);
+        String newHash = passwordHashingService.encode(request.getNewPassword());
         
-        // Mark token as used
-        resetToken.setUsed(true);
-        passwordResetTokenRepository.save(resetToken);
-        
-        // Clean up expired tokens
-        passwordResetTokenRepository.deleteExpiredTokens(LocalDateTime.now());
+        transactionTemplate.execute(status -> {
+            PasswordResetToken token = passwordResetTokenRepository.findById(resetToken.getId())
+                    .orElseThrow(() -> new UnauthorizedException("Invalid or expired reset token/OTP"));
+            
+            // Check if token is expired
+            if (token.getExpiryTime().isBefore(LocalDateTime.now())) {
+                throw new UnauthorizedException("Reset token/OTP has expired");
+            }
+            
+            // Mark token as used; zero rows means a concurrent reset used it while we were hashing
+            int claimed = jdbcTemplate.update(
+                    "UPDATE password_reset_tokens SET used = true WHERE id = ? AND used = false", token.getId());
+            if (claimed == 0) {
+                throw new UnauthorizedException("This reset token/OTP has already been used");
+            }
+            
+            // Get user and update password
+            User user = userRepository.findById(token.getUserId())
+                    .orElseThrow(() -> new UnauthorizedException("User not found"));
+            user.setPassword(newHash);
+            userRepository.save(user);
+            
+            // Sign out every session that used the old password
+            revokeUserRefreshTokens(user.getId());
+            return null;
+        });
+    }
+    
+    /**
+     * Reset token by token or OTP, read with plain JDBC; only id, user and used flag are filled in
+     */
+    private Optional<PasswordResetToken> findResetToken(ResetPasswordRequest request) {
+        RowMapper<PasswordResetToken> mapper = (rs, rowNum) -> {
+            PasswordResetToken token = new PasswordResetToken();
+            token.setId(rs.getLong("id"));
+            token.setUserId(rs.getLong("user_id"));
+            token.setUsed(rs.getBoolean("used"));
+            return token;
+        };
+        if (request.getToken() != null && !request.getToken().trim().isEmpty()) {
+            return jdbcTemplate.query(
+                    "SELECT id, user_id, used FROM password_reset_tokens WHERE token = ?",
+                    mapper, request.getToken()).stream().findFirst();
+        }
+        // OTPs are only 6 digits and old rows are purged in the background, so pick the newest match
+        return jdbcTemplate.query(
+                "SELECT id, user_id, used FROM password_reset_tokens WHERE otp = ? ORDER BY id DESC LIMIT 1",
+                mapper, request.getOtp()).stream().findFirst();
     }
     
     private String generateOtp() {
@@ -475,5 +626,14 @@ public class AuthService {
         int otp = 100000 + random.nextInt(900000);
         return String.valueOf(otp);
     }
+    
+    private static final class LoginCredentials {
+        private final Long userId;
+        private final String passwordHash;
+        
+        private LoginCredentials(Long userId, String passwordHash) {
+            this.userId = userId;
+            this.passwordHash = passwordHash;
+        }
+    }
 }
-
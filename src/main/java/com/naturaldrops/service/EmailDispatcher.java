@@ -0,0 +1,252 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.entity.EmailDeadLetter;
+import com.naturaldrops.entity.EmailOutbox;
+import com.naturaldrops.repository.EmailDeadLetterRepository;
+import com.naturaldrops.repository.EmailOutboxRepository;
+import com.naturaldrops.util.MetricsSource;
+import com.naturaldrops.util.OutboxWorker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends emails from the email_outbox table on a single background worker, so request threads
+ * only insert a row and never wait on SMTP.
+ *
+ * Each pass claims a batch with FOR UPDATE SKIP LOCKED (leasing the rows so other instances
+ * skip them), sends the whole batch over one SMTP connection, then deletes the sent rows.
+ * Failed rows are retried with exponential backoff and moved to email_dead_letters after
+ * the last attempt (recipient, subject and error only - never the body). The OutboxWorker is woken
+ * right after the enqueuing transaction commits; a periodic poll picks up retries and anything left
+ * over from a restart.
+ */
+@Service
+@Slf4j
+public class EmailDispatcher implements MetricsSource {
+    
+    private static final String REDACTED_BODY = "[redacted]";
+    
+    private final JavaMailSender mailSender;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailDeadLetterRepository deadLetterRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    // A full batch means more may be due
+    private final OutboxWorker worker = new OutboxWorker("email-dispatcher",
+            () -> dispatchBatch() == this.batchSize);
+    
+    @Value("${spring.mail.username:no-reply@naturaldrops.com}")
+    private String fromEmail;
+    
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize;
+    
+    @Value("${email.outbox.max-attempts:6}")
+    private int maxAttempts;
+    
+    @Value("${email.outbox.base-backoff-seconds:30}")
+    private long baseBackoffSeconds;
+    
+    @Value("${email.outbox.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds;
+    
+    // How long a claimed row stays invisible to other workers while it is being sent
+    @Value("${email.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+    
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    
+    public EmailDispatcher(JavaMailSender mailSender,
+                           EmailOutboxRepository outboxRepository,
+                           EmailDeadLetterRepository deadLetterRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.mailSender = mailSender;
+        this.outboxRepository = outboxRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Queue an email. Joins the caller's transaction, so the email is only sent if it commits.
+     */
+    public void enqueue(String toAddress, String subject, String body) {
+        EmailOutbox email = new EmailOutbox();
+        email.setToAddress(toAddress);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setAttempts(0);
+        outboxRepository.save(email);
+        
+        worker.wakeUpAfterCommit();
+    }
+    
+    @Scheduled(initialDelayString = "${email.outbox.initial-delay-ms:10000}",
+               fixedDelayString = "${email.outbox.poll-interval-ms:15000}")
+    public void poll() {
+        wakeUp();
+    }
+    
+    public void wakeUp() {
+        worker.wakeUp();
+    }
+    
+    private int dispatchBatch() {
+        List<EmailOutbox> batch = transactionTemplate.execute(status -> claimBatch());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        batches.incrementAndGet();
+        
+        SimpleMailMessage[] messages = new SimpleMailMessage[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            EmailOutbox email = batch.get(i);
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(fromEmail);
+            message.setTo(email.getToAddress());
+            message.setSubject(email.getSubject());
+            message.setText(email.getBody());
+            messages[i] = message;
+        }
+        
+        Map<Object, Exception> failures = send(messages);
+        transactionTemplate.executeWithoutResult(status -> recordResults(batch, messages, failures));
+        return batch.size();
+    }
+    
+    private List<EmailOutbox> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> batch = outboxRepository.lockDueBatch(now, batchSize);
+        for (EmailOutbox email : batch) {
+            email.setAttempts(email.getAttempts() + 1);
+            email.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+        }
+        return outboxRepository.saveAll(batch);
+    }
+    
+    /**
+     * Send the batch over one SMTP connection and return the failed messages (by identity)
+     */
+    private Map<Object, Exception> send(SimpleMailMessage[] messages) {
+        try {
+            mailSender.send(messages);
+            return Collections.emptyMap();
+        } catch (MailSendException e) {
+            // Per-message failures are reported individually; an empty map means the whole batch failed
+            if (!e.getFailedMessages().isEmpty()) {
+                Map<Object, Exception> failures = new IdentityHashMap<>();
+                failures.putAll(e.getFailedMessages());
+                return failures;
+            }
+            return allFailed(messages, e);
+        } catch (MailAuthenticationException e) {
+            // Gmail authentication failure - likely wrong password or not using app password
+            log.error("❌ Gmail SMTP authentication failed. " +
+                    "\nTroubleshooting steps:" +
+                    "\n1. Ensure 2-Step Verification is enabled in Gmail" +
+                    "\n2. Generate App Password at: https://myaccount.google.com/apppasswords" +
+                    "\n3. Use the 16-character App Password (not regular password) in application.properties" +
+                    "\n4. Set spring.mail.username=your-email@gmail.com" +
+                    "\n5. Set spring.mail.password=your-16-char-app-password" +
+                    "\nError details: {}", e.getMessage());
+            return allFailed(messages, e);
+        } catch (MailException e) {
+            return allFailed(messages, e);
+        }
+    }
+    
+    private static Map<Object, Exception> allFailed(SimpleMailMessage[] messages, Exception e) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        for (SimpleMailMessage message : messages) {
+            failures.put(message, e);
+        }
+        return failures;
+    }
+    
+    private void recordResults(List<EmailOutbox> batch, SimpleMailMessage[] messages, Map<Object, Exception> failures) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> finished = new ArrayList<>();
+        List<EmailOutbox> retries = new ArrayList<>();
+        
+        for (int i = 0; i < batch.size(); i++) {
+            EmailOutbox email = batch.get(i);
+            Exception failure = failures.get(messages[i]);
+            if (failure == null) {
+                sent.incrementAndGet();
+                finished.add(email.getId());
+                continue;
+            }
+            
+            failedAttempts.incrementAndGet();
+            String error = truncate(failure.getClass().getSimpleName() + ": " + failure.getMessage(), 500);
+            if (email.getAttempts() >= maxAttempts) {
+                // The body is not kept: it may hold a password reset link or OTP
+                deadLetterRepository.save(new EmailDeadLetter(null, email.getToAddress(), email.getSubject(),
+                        REDACTED_BODY, email.getAttempts(), error, email.getCreatedAt(), now));
+                deadLettered.incrementAndGet();
+                finished.add(email.getId());
+                log.error("❌ Email to {} moved to dead letters after {} attempts: {}",
+                        email.getToAddress(), email.getAttempts(), error);
+            } else {
+                email.setLastError(error);
+                email.setNextAttemptAt(now.plusSeconds(
+                        OutboxWorker.backoffSeconds(email.getAttempts(), baseBackoffSeconds, maxBackoffSeconds)));
+                retries.add(email);
+                log.warn("Email to {} failed (attempt {}/{}), retrying at {}: {}",
+                        email.getToAddress(), email.getAttempts(), maxAttempts, email.getNextAttemptAt(), error);
+            }
+        }
+        
+        if (!finished.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(finished);
+        }
+        if (!retries.isEmpty()) {
+            outboxRepository.saveAll(retries);
+        }
+    }
+    
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdown();
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "emailOutbox";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sent", sent.get());
+        metrics.put("failedAttempts", failedAttempts.get());
+        metrics.put("deadLettered", deadLettered.get());
+        metrics.put("batches", batches.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,231 @@
+package com.naturaldrops.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naturaldrops.dto.request.CreateOrderRequest;
+import com.naturaldrops.entity.IdempotencyRecord;
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.exception.ConflictException;
+import com.naturaldrops.repository.IdempotencyRecordRepository;
+import com.naturaldrops.util.BoundedTtlCache;
+import com.naturaldrops.util.MetricsSource;
+import com.naturaldrops.util.TokenDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Idempotent order creation for POST /api/orders with an Idempotency-Key header.
+ *
+ * The first request for a key creates the order and stores key -> order id in idempotency_keys
+ * (same transaction, unique key). Retries within the TTL get the original order back without
+ * running OrderService.createOrder again. Completed keys are also kept in an in-memory LRU, and
+ * concurrent requests with the same key on this instance wait for the first one instead of racing it;
+ * across instances the unique constraint decides the winner.
+ */
+@Service
+@Slf4j
+public class IdempotencyService implements MetricsSource {
+    
+    public static final int MAX_KEY_LENGTH = 255;
+    
+    private final OrderService orderService;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedTtlCache<String, StoredOutcome> completed;
+    private final Map<String, CompletableFuture<StoredOutcome>> inFlight = new ConcurrentHashMap<>();
+    private final long ttlSeconds;
+    
+    @Value("${orders.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMillis;
+    
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    
+    public IdempotencyService(OrderService orderService,
+                              IdempotencyRecordRepository idempotencyRecordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${orders.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${orders.idempotency.cache-max-size:10000}") int cacheMaxSize) {
+        this.orderService = orderService;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlSeconds = TimeUnit.HOURS.toSeconds(ttlHours);
+        // In-memory entries expire well before the stored record, never after it
+        this.completed = new BoundedTtlCache<>(cacheMaxSize,
+                Math.min(TimeUnit.HOURS.toMillis(ttlHours), TimeUnit.MINUTES.toMillis(10)));
+    }
+    
+    /**
+     * Create the order, or return the order already created with this key by the same user
+     */
+    public Outcome createOrder(String idempotencyKey, Long userId, CreateOrderRequest request) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String recordKey = TokenDigest.sha256Hex((userId != null ? userId : "anonymous") + ":" + idempotencyKey);
+        String requestHash = hashRequest(request);
+        
+        StoredOutcome cached = completed.get(recordKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+        
+        CompletableFuture<StoredOutcome> mine = new CompletableFuture<>();
+        CompletableFuture<StoredOutcome> running = inFlight.putIfAbsent(recordKey, mine);
+        if (running != null) {
+            // Same key already being processed on this instance - wait for its outcome
+            return replay(await(running), requestHash);
+        }
+        
+        try {
+            Outcome outcome = createOrReplay(recordKey, requestHash, request);
+            StoredOutcome stored = new StoredOutcome(outcome.getOrder().getId(), requestHash);
+            completed.put(recordKey, stored);
+            mine.complete(stored);
+            return outcome;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(recordKey, mine);
+        }
+    }
+    
+    private Outcome createOrReplay(String recordKey, String requestHash, CreateOrderRequest request) {
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findValidByKey(recordKey, LocalDateTime.now());
+        if (existing.isPresent()) {
+            return replay(toStoredOutcome(existing.get()), requestHash);
+        }
+        
+        try {
+            Order order = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                idempotencyRecordRepository.deleteExpiredByKey(recordKey, now);
+                
+                Order savedOrder = orderService.createOrder(request);
+                
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setIdempotencyKey(recordKey);
+                record.setRequestHash(requestHash);
+                record.setOrderId(savedOrder.getId());
+                record.setExpiresAt(now.plusSeconds(ttlSeconds));
+                idempotencyRecordRepository.saveAndFlush(record);
+                return savedOrder;
+            });
+            created.incrementAndGet();
+            return new Outcome(order, false);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance stored this key first; our order was rolled back with the insert
+            IdempotencyRecord winner = idempotencyRecordRepository.findValidByKey(recordKey, LocalDateTime.now())
+                    .orElseThrow(() -> e);
+            log.debug("Idempotency-Key race lost to another instance, replaying order {}", winner.getOrderId());
+            return replay(toStoredOutcome(winner), requestHash);
+        }
+    }
+    
+    private Outcome replay(StoredOutcome stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            mismatches.incrementAndGet();
+            throw new ConflictException("Idempotency-Key was already used for a different order request");
+        }
+        replayed.incrementAndGet();
+        return new Outcome(orderService.getOrderById(stored.orderId), true);
+    }
+    
+    private StoredOutcome await(CompletableFuture<StoredOutcome> running) {
+        try {
+            return running.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // The first request failed and stored nothing - the retry fails the same way
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Order creation failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still being processed");
+        }
+    }
+    
+    private String hashRequest(CreateOrderRequest request) {
+        try {
+            return TokenDigest.sha256Hex(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize order request", e);
+        }
+    }
+    
+    private static StoredOutcome toStoredOutcome(IdempotencyRecord record) {
+        return new StoredOutcome(record.getOrderId(), record.getRequestHash());
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "idempotency";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("created", created.get());
+        metrics.put("replayed", replayed.get());
+        metrics.put("mismatches", mismatches.get());
+        metrics.put("inFlight", inFlight.size());
+        metrics.put("cacheSize", completed.size());
+        metrics.put("cacheHits", completed.getHitCount());
+        metrics.put("cacheMisses", completed.getMissCount());
+        return metrics;
+    }
+    
+    /**
+     * The order for a request and whether it was replayed from an earlier request with the same key
+     */
+    public static class Outcome {
+        private final Order order;
+        private final boolean replayed;
+        
+        Outcome(Order order, boolean replayed) {
+            this.order = order;
+            this.replayed = replayed;
+        }
+        
+        public Order getOrder() {
+            return order;
+        }
+        
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+    
+    private static final class StoredOutcome {
+        private final Long orderId;
+        private final String requestHash;
+        
+        private StoredOutcome(Long orderId, String requestHash) {
+            this.orderId = orderId;
+            this.requestHash = requestHash;
+        }
+    }
+}
@@ -10,11 +10,24 @@ import com.naturaldrops.repository.ProductImageRepository;
 import com.naturaldrops.repository.ProductVideoRepository;
 import com.naturaldrops.repository.StockHistoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +37,7 @@ public class MenuService {
     private final ProductImageRepository productImageRepository;
     private final ProductVideoRepository productVideoRepository;
     private final StockHistoryRepository stockHistoryRepository;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     
     @Transactional(readOnly = true)
     public List<MenuItem> getAllMenuItems() {
@@ -35,6 +49,26 @@ public class MenuService {
                 .orElseThrow(() -> new ResourceNotFoundException("Menu item not found with id: " + id));
     }
     
+    /**
+     * Catalog name and rate of the given menu items by id, read in one query without media.
+     * Throws if any of them does not exist.
+     */
+    public Map<Long, MenuItemRepository.MenuItemPrice> getMenuItemPrices(Collection<Long> ids) {
+        Map<Long, MenuItemRepository.MenuItemPrice> prices = new HashMap<>();
+        if (ids.isEmpty()) {
+            return prices;
+        }
+        for (MenuItemRepository.MenuItemPrice price : menuItemRepository.findPricesByIdIn(ids)) {
+            prices.put(price.getId(), price);
+        }
+        for (Long id : ids) {
+            if (!prices.containsKey(id)) {
+                throw new ResourceNotFoundException("Menu item not found with id: " + id);
+            }
+        }
+        return prices;
+    }
+    
     public List<MenuItem> getMenuItemsByCategory(MenuItem.Category category) {
         return menuItemRepository.findByCategoryWithMedia(category);
     }
@@ -113,54 +147,151 @@ public class MenuService {
         return menuItemRepository.save(menuItem);
     }
     
+    /**
+     * Deduct stock for all lines of an order in one batch. Either every line is deducted
+     * or, if any item is short, nothing is (IllegalStateException naming the short items).
+     */
     @Transactional
-    public void deductStock(Long menuItemId, Integer quantity, Long orderId, String changedBy) {
-        MenuItem menuItem = getMenuItemById(menuItemId);
-        Integer quantityBefore = menuItem.getStockQuantity();
+    public void reserveStock(Collection<StockLine> lines, Long orderId, String changedBy) {
+        throwIfRejected(reserveStockForOrders(Collections.singletonMap(orderId, lines), changedBy), orderId);
+    }
+    
+    /**
+     * Add stock back for all lines of an order in one batch
+     */
+    @Transactional
+    public void releaseStock(Collection<StockLine> lines, Long orderId, String changedBy) {
+        throwIfRejected(releaseStockForOrders(Collections.singletonMap(orderId, lines), changedBy), orderId);
+    }
+    
+    /**
+     * Deduct stock for several orders in one batch (bulk confirm). Orders are served in map iteration
+     * order; an order whose items are short or missing is skipped as a whole and returned with the reason,
+     * the others are deducted.
+     */
+    @Transactional
+    public Map<Long, RuntimeException> reserveStockForOrders(Map<Long, ? extends Collection<StockLine>> linesByOrder,
+                                                             String changedBy) {
+        return applyStockChanges(linesByOrder, -1, changedBy,
+                StockHistory.ChangeType.order_confirmed, "Stock deducted for order #");
+    }
+    
+    /**
+     * Add stock back for several orders in one batch (bulk cancel); returns orders that were skipped
+     */
+    @Transactional
+    public Map<Long, RuntimeException> releaseStockForOrders(Map<Long, ? extends Collection<StockLine>> linesByOrder,
+                                                             String changedBy) {
+        return applyStockChanges(linesByOrder, 1, changedBy,
+                StockHistory.ChangeType.order_canceled, "Stock restored from canceled order #");
+    }
+    
+    private static void throwIfRejected(Map<Long, RuntimeException> rejected, Long orderId) {
+        RuntimeException rejection = rejected.get(orderId);
+        if (rejection != null) {
+            throw rejection;
+        }
+    }
+    
+    private Map<Long, RuntimeException> applyStockChanges(Map<Long, ? extends Collection<StockLine>> linesByOrder,
+                                                          int sign, String changedBy,
+                                                          StockHistory.ChangeType changeType, String notesPrefix) {
+        // Merge duplicate items per order and collect all items, sorted by id, so every transaction
+        // locks rows in the same order (no deadlocks)
+        Map<Long, SortedMap<Long, Integer>> quantitiesByOrder = new LinkedHashMap<>();
+        SortedSet<Long> menuItemIds = new TreeSet<>();
+        for (Map.Entry<Long, ? extends Collection<StockLine>> entry : linesByOrder.entrySet()) {
+            SortedMap<Long, Integer> quantities = new TreeMap<>();
+            for (StockLine line : entry.getValue()) {
+                if (line.getMenuItemId() != null && isStockChange(line.getQuantity())) {
+                    quantities.merge(line.getMenuItemId(), line.getQuantity(), Integer::sum);
+                }
+            }
+            quantitiesByOrder.put(entry.getKey(), quantities);
+            menuItemIds.addAll(quantities.keySet());
+        }
+        Map<Long, RuntimeException> rejected = new HashMap<>();
+        if (menuItemIds.isEmpty()) {
+            return rejected;
+        }
         
-        if (quantityBefore < quantity) {
-            throw new IllegalStateException("Insufficient stock for menu item: " + menuItem.getName());
+        // One round trip locks every affected row (in id order)
+        Map<Long, LockedStock> stock = new LinkedHashMap<>();
+        namedParameterJdbcTemplate.query(
+                "SELECT id, name, stock_quantity FROM menu_items WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("ids", menuItemIds),
+                rs -> {
+                    stock.put(rs.getLong("id"), new LockedStock(rs.getString("name"), rs.getInt("stock_quantity")));
+                });
+        
+        LocalDateTime changedAt = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(changedAt);
+        List<StockHistory> history = new ArrayList<>();
+        for (Map.Entry<Long, SortedMap<Long, Integer>> entry : quantitiesByOrder.entrySet()) {
+            Long orderId = entry.getKey();
+            SortedMap<Long, Integer> quantities = entry.getValue();
+            
+            // Validate every line of the order before applying any of it
+            Long missingId = null;
+            List<String> shortItems = new ArrayList<>();
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                LockedStock item = stock.get(line.getKey());
+                if (item == null) {
+                    missingId = line.getKey();
+                    break;
+                }
+                if (sign < 0 && item.quantity < line.getValue()) {
+                    shortItems.add(item.name);
+                }
+            }
+            if (missingId != null) {
+                rejected.put(orderId, new ResourceNotFoundException("Menu item not found with id: " + missingId));
+                continue;
+            }
+            if (!shortItems.isEmpty()) {
+                rejected.put(orderId, new IllegalStateException(
+                        "Insufficient stock for menu item: " + String.join(", ", shortItems)));
+                continue;
+            }
+            
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                LockedStock item = stock.get(line.getKey());
+                int quantityBefore = item.quantity;
+                int quantityChange = sign * line.getValue();
+                item.quantity = quantityBefore + quantityChange;
+                item.changed = true;
+                history.add(new StockHistory(null, line.getKey(), orderId, changeType, quantityChange,
+                        quantityBefore, item.quantity, changedBy, changedAt, notesPrefix + orderId));
+            }
         }
         
-        menuItem.setStockQuantity(quantityBefore - quantity);
-        menuItem.setUpdatedAt(LocalDateTime.now());
-        menuItemRepository.save(menuItem);
+        List<Object[]> stockUpdates = new ArrayList<>(stock.size());
+        for (Map.Entry<Long, LockedStock> entry : stock.entrySet()) {
+            if (entry.getValue().changed) {
+                stockUpdates.add(new Object[] { entry.getValue().quantity, now, entry.getKey() });
+            }
+        }
+        if (stockUpdates.isEmpty()) {
+            return rejected;
+        }
         
-        // Record stock history
-        StockHistory history = new StockHistory();
-        history.setMenuItemId(menuItemId);
-        history.setOrderId(orderId);
-        history.setChangeType(StockHistory.ChangeType.order_confirmed);
-        history.setQuantityChange(-quantity);
-        history.setQuantityBefore(quantityBefore);
-        history.setQuantityAfter(quantityBefore - quantity);
-        history.setChangedBy(changedBy);
-        history.setChangedAt(LocalDateTime.now());
-        history.setNotes("Stock deducted for order #" + orderId);
-        stockHistoryRepository.save(history);
+        // Rows are locked, so absolute values are safe
+        namedParameterJdbcTemplate.getJdbcTemplate().batchUpdate(
+                "UPDATE menu_items SET stock_quantity = ?, updated_at = ? WHERE id = ?",
+                stockUpdates);
+        // Ids come from the pooled sequence, so the history goes out as a JDBC batch at flush
+        stockHistoryRepository.saveAll(history);
+        return rejected;
     }
     
-    @Transactional
-    public void restoreStock(Long menuItemId, Integer quantity, Long orderId, String changedBy) {
-        MenuItem menuItem = getMenuItemById(menuItemId);
-        Integer quantityBefore = menuItem.getStockQuantity();
-        
-        menuItem.setStockQuantity(quantityBefore + quantity);
-        menuItem.setUpdatedAt(LocalDateTime.now());
-        menuItemRepository.save(menuItem);
-        
-        // Record stock history
-        StockHistory history = new StockHistory();
-        history.setMenuItemId(menuItemId);
-        history.setOrderId(orderId);
-        history.setChangeType(StockHistory.ChangeType.order_canceled);
-        history.setQuantityChange(quantity);
-        history.setQuantityBefore(quantityBefore);
-        history.setQuantityAfter(quantityBefore + quantity);
-        history.setChangedBy(changedBy);
-        history.setChangedAt(LocalDateTime.now());
-        history.setNotes("Stock restored from canceled order #" + orderId);
-        stockHistoryRepository.save(history);
+    /**
+     * False for a zero quantity (nothing to change); negative quantities are rejected
+     */
+    private static boolean isStockChange(Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        return quantity > 0;
     }
     
     @Transactional
@@ -234,5 +365,39 @@ public class MenuService {
         }
         productVideoRepository.deleteById(videoId);
     }
+    
+    /**
+     * A menu_items row locked by applyStockChanges, with its running quantity
+     */
+    private static final class LockedStock {
+        private final String name;
+        private int quantity;
+        private boolean changed;
+        
+        private LockedStock(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+    
+    /**
+     * One menu item quantity in a batch stock change
+     */
+    public static class StockLine {
+        private final Long menuItemId;
+        private final Integer quantity;
+        
+        public StockLine(Long menuItemId, Integer quantity) {
+            this.menuItemId = menuItemId;
+            this.quantity = quantity;
+        }
+        
+        public Long getMenuItemId() {
+            return menuItemId;
+        }
+        
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
 }
-
@@ -3,6 +3,7 @@ package com.naturaldrops.service;
 import com.naturaldrops.entity.BuyerNotification;
 import com.naturaldrops.entity.Notification;
 import com.naturaldrops.entity.Order;
+import com.naturaldrops.entity.OrderEvent;
 import com.naturaldrops.exception.ResourceNotFoundException;
 import com.naturaldrops.repository.BuyerNotificationRepository;
 import com.naturaldrops.repository.NotificationRepository;
@@ -11,9 +12,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -21,7 +22,7 @@ public class NotificationService {
     
     private final NotificationRepository notificationRepository;
     private final BuyerNotificationRepository buyerNotificationRepository;
-    private final PushNotificationService pushNotificationService;
+    private final OrderEventDispatcher orderEventDispatcher;
     
     // Admin Notifications
     public List<Notification> getAllAdminNotifications() {
@@ -80,15 +81,30 @@ public class NotificationService {
         createBuyerNotification(order, order.getStatus());
     }
     
+    /**
+     * Queue the buyer notification (in-app + push) for an order status change. Only an order_events
+     * row is written here, in the caller's transaction; OrderEventDispatcher delivers it after commit.
+     */
     @Transactional
     public void createBuyerNotification(Order order, Order.OrderStatus status) {
-        BuyerNotification notification = new BuyerNotification();
-        notification.setBuyerId(order.getBuyerId());
-        notification.setOrderId(order.getId());
-        
-        // Create message and title based on status
-        // Title should be "Order Status Updated" as per requirements
-        String title = "Order Status Updated";
+        orderEventDispatcher.enqueue(Collections.singletonList(
+                OrderEventDispatcher.newEvent(order, status, buildBuyerMessage(order, status))));
+    }
+    
+    /**
+     * Queue buyer notifications for many orders moved to the same status (bulk order actions)
+     */
+    @Transactional
+    public void createBuyerNotifications(List<Order> orders, Order.OrderStatus status) {
+        List<OrderEvent> events = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            events.add(OrderEventDispatcher.newEvent(order, status, buildBuyerMessage(order, status)));
+        }
+        orderEventDispatcher.enqueue(events);
+    }
+    
+    private static String buildBuyerMessage(Order order, Order.OrderStatus status) {
+        // Title is always "Order Status Updated" as per requirements (set by OrderEventDispatcher)
         String message;
         switch (status) {
             case confirmed:
@@ -111,31 +127,7 @@ public class NotificationService {
                 message = "Your order #" + order.getId() + " status has been updated to " + status + ".";
         }
         
-        notification.setMessage(message);
-        notification.setIsRead(false);
-        notification.setCreatedAt(LocalDateTime.now());
-        
-        buyerNotificationRepository.save(notification);
-        
-        // Send push notification to buyer
-        try {
-            Map<String, Object> notificationData = new HashMap<>();
-            notificationData.put("orderId", order.getId());
-            notificationData.put("status", status.toString());
-            notificationData.put("type", "order_update");
-            
-            pushNotificationService.sendNotificationToBuyer(
-                    order.getBuyerId(),
-                    title,
-                    message,
-                    notificationData
-            );
-        } catch (Exception e) {
-            // Log error but don't fail the transaction
-            // Push notification failure shouldn't prevent order status update
-            System.err.println("Failed to send push notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        return message;
     }
     
     @Transactional
@@ -0,0 +1,250 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.util.ChunkedJob;
+import com.naturaldrops.util.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the live order tables small.
+ *
+ * Partitions: once orders is range-partitioned by order_date (db/partition_orders.sql), the monthly
+ * partitions for the current and upcoming months are created ahead of time, so inserts never land in
+ * the default partition. Does nothing while orders is a plain table.
+ *
+ * Archival (orders.archive.enabled): delivered / canceled orders older than the horizon are moved,
+ * with their items and status history, into the same tables in the "archive" schema. Each chunk is
+ * moved in its own short transaction (DELETE ... RETURNING into INSERT) by ChunkedJob.
+ * Archived orders no longer show up in the API.
+ */
+@Service
+@Slf4j
+public class OrderArchiveService implements MetricsSource {
+    
+    private static final String ARCHIVE_SCHEMA = "archive";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    
+    // Moved in this order: children first, order_items may still reference orders with a foreign key
+    private static final String[] ARCHIVED_TABLES = { "order_items", "order_status_history", "orders" };
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${orders.partitions.months-ahead:3}")
+    private int monthsAhead;
+    
+    @Value("${orders.archive.enabled:false}")
+    private boolean archiveEnabled;
+    
+    @Value("${orders.archive.horizon-days:365}")
+    private int horizonDays;
+    
+    @Value("${orders.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${orders.archive.pause-ms:50}")
+    private long pauseMillis;
+    
+    @Value("${orders.archive.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+    
+    // Stats of the last run and running totals (exposed via /api/metrics)
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile boolean ordersPartitioned;
+    private volatile int lastPartitionsCreated;
+    private volatile int lastOrdersArchived;
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong totalOrdersArchived = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    
+    public OrderArchiveService(JdbcTemplate jdbcTemplate,
+                               NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(initialDelayString = "${orders.archive.initial-delay-ms:120000}",
+               fixedDelayString = "${orders.archive.interval-ms:21600000}")
+    public void runMaintenance() {
+        long start = System.nanoTime();
+        try {
+            lastPartitionsCreated = createUpcomingPartitions();
+            
+            if (archiveEnabled) {
+                int archived = archiveClosedOrders();
+                lastOrdersArchived = archived;
+                totalOrdersArchived.addAndGet(archived);
+                if (archived > 0) {
+                    log.info("Order archival: {} delivered / canceled orders older than {} days moved to {} in {} ms",
+                            archived, horizonDays, ARCHIVE_SCHEMA, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        } catch (RuntimeException e) {
+            failedRuns.incrementAndGet();
+            log.error("Order maintenance failed: {}", e.getMessage(), e);
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            totalRuns.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Create the monthly partitions from the current month to monthsAhead, if orders is partitioned
+     */
+    private int createUpcomingPartitions() {
+        Boolean partitioned = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('orders'))",
+                Boolean.class));
+        ordersPartitioned = Boolean.TRUE.equals(partitioned);
+        if (!ordersPartitioned) {
+            return 0;
+        }
+        
+        // order_date is stored in UTC (hibernate.jdbc.time_zone)
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        int created = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String partition = "orders_p" + month.format(PARTITION_SUFFIX);
+            try {
+                Boolean isNew = transactionTemplate.execute(status -> createPartition(partition, month));
+                if (Boolean.TRUE.equals(isNew)) {
+                    created++;
+                    log.info("Created order partition {}", partition);
+                }
+            } catch (DataAccessException e) {
+                // e.g. the default partition already holds orders of that month - needs fixing by hand
+                log.error("Could not create order partition {}: {}", partition, e.getMessage());
+            }
+        }
+        return created;
+    }
+    
+    private boolean createPartition(String partition, YearMonth month) {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (Boolean.TRUE.equals(exists)) {
+            return false;
+        }
+        // Briefly locks orders; only happens once a month
+        jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF orders FOR VALUES FROM ('"
+                + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        return true;
+    }
+    
+    /**
+     * Move closed orders older than the horizon in chunks, until less than a full chunk is left
+     * (or the per-run cap is hit)
+     */
+    private int archiveClosedOrders() {
+        Map<String, String> columnLists = transactionTemplate.execute(status -> prepareArchiveTables());
+        LocalDateTime cutoff = LocalDateTime.now(ZoneOffset.UTC).minusDays(horizonDays);
+        
+        return ChunkedJob.run(transactionTemplate, batchSize, maxBatchesPerRun, pauseMillis,
+                () -> archiveBatch(cutoff, columnLists));
+    }
+    
+    private int archiveBatch(LocalDateTime cutoff, Map<String, String> columnLists) {
+        // order_date bound, so only the old partitions are scanned
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE status IN ('delivered', 'canceled') AND order_date < ? " +
+                "ORDER BY order_date LIMIT ? FOR UPDATE SKIP LOCKED",
+                Long.class, cutoff, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        for (String table : ARCHIVED_TABLES) {
+            String keyColumn = table.equals("orders") ? "id" : "order_id";
+            String columns = columnLists.get(table);
+            namedParameterJdbcTemplate.update(
+                    "WITH moved AS (DELETE FROM " + table + " WHERE " + keyColumn + " IN (:ids) RETURNING " + columns + ") " +
+                    "INSERT INTO " + ARCHIVE_SCHEMA + "." + table + " (" + columns + ") SELECT " + columns + " FROM moved",
+                    params);
+        }
+        return ids.size();
+    }
+    
+    /**
+     * Create the archive tables if needed and add columns the live tables gained since (later migrations).
+     * Returns the column list to copy for each table.
+     */
+    private Map<String, String> prepareArchiveTables() {
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+        
+        Map<String, String> columnLists = new LinkedHashMap<>();
+        for (String table : ARCHIVED_TABLES) {
+            String archiveTable = ARCHIVE_SCHEMA + "." + table;
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + archiveTable + " (LIKE " + table + ")");
+            
+            Set<String> archivedColumns = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT attname FROM pg_attribute WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped",
+                    String.class, archiveTable));
+            List<Map<String, Object>> liveColumns = jdbcTemplate.queryForList(
+                    "SELECT attname, format_type(atttypid, atttypmod) AS type FROM pg_attribute " +
+                    "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped ORDER BY attnum",
+                    table);
+            
+            StringJoiner columns = new StringJoiner(", ");
+            for (Map<String, Object> column : liveColumns) {
+                String name = (String) column.get("attname");
+                if (!archivedColumns.contains(name)) {
+                    jdbcTemplate.execute("ALTER TABLE " + archiveTable + " ADD COLUMN \"" + name + "\" " + column.get("type"));
+                }
+                columns.add("\"" + name + "\"");
+            }
+            columnLists.put(table, columns.toString());
+        }
+        
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_archive_orders_id ON " + ARCHIVE_SCHEMA + ".orders (id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_archive_orders_buyer_date ON " + ARCHIVE_SCHEMA + ".orders (buyer_id, order_date)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_archive_order_items_order_id ON " + ARCHIVE_SCHEMA + ".order_items (order_id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_archive_order_status_history_order_id ON " + ARCHIVE_SCHEMA + ".order_status_history (order_id)");
+        return columnLists;
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "orderArchive";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lastRunAt", lastRunAt);
+        metrics.put("lastRunMillis", lastRunMillis);
+        metrics.put("ordersPartitioned", ordersPartitioned);
+        metrics.put("lastPartitionsCreated", lastPartitionsCreated);
+        metrics.put("archiveEnabled", archiveEnabled);
+        metrics.put("lastOrdersArchived", lastOrdersArchived);
+        metrics.put("totalRuns", totalRuns.get());
+        metrics.put("totalOrdersArchived", totalOrdersArchived.get());
+        metrics.put("failedRuns", failedRuns.get());
+        return metrics;
+    }
+}
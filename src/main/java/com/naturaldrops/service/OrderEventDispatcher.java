@@ -0,0 +1,239 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.entity.BuyerNotification;
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.entity.OrderEvent;
+import com.naturaldrops.repository.BuyerNotificationRepository;
+import com.naturaldrops.repository.OrderEventRepository;
+import com.naturaldrops.util.MetricsSource;
+import com.naturaldrops.util.OutboxWorker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers buyer notifications for order status changes from the order_events table on a single
+ * background worker, so order transactions only insert a row and never hold a database connection
+ * while waiting on the Expo push API.
+ *
+ * Each pass claims a batch with FOR UPDATE SKIP LOCKED (only the oldest pending event of each order,
+ * so one order's notifications stay in order), creates the in-app buyer notifications, sends the
+ * pushes in batched requests and deletes the delivered events. Failed pushes are retried with
+ * exponential backoff and dropped after the last attempt. The OutboxWorker is woken right after the
+ * enqueuing transaction commits; a periodic poll picks up retries and anything left from a restart.
+ */
+@Service
+@Slf4j
+public class OrderEventDispatcher implements MetricsSource {
+    
+    private static final String BUYER_NOTIFICATION_TITLE = "Order Status Updated";
+    
+    private final OrderEventRepository orderEventRepository;
+    private final BuyerNotificationRepository buyerNotificationRepository;
+    private final PushNotificationService pushNotificationService;
+    private final TransactionTemplate transactionTemplate;
+    
+    // Only one event per order is claimed per pass, so keep going until nothing is due
+    private final OutboxWorker worker = new OutboxWorker("order-event-dispatcher", () -> dispatchBatch() > 0);
+    
+    @Value("${notifications.outbox.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${notifications.outbox.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${notifications.outbox.base-backoff-seconds:15}")
+    private long baseBackoffSeconds;
+    
+    @Value("${notifications.outbox.max-backoff-seconds:900}")
+    private long maxBackoffSeconds;
+    
+    // How long a claimed event stays invisible to other workers while it is being delivered
+    @Value("${notifications.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+    
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    
+    public OrderEventDispatcher(OrderEventRepository orderEventRepository,
+                                BuyerNotificationRepository buyerNotificationRepository,
+                                PushNotificationService pushNotificationService,
+                                PlatformTransactionManager transactionManager) {
+        this.orderEventRepository = orderEventRepository;
+        this.buyerNotificationRepository = buyerNotificationRepository;
+        this.pushNotificationService = pushNotificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Event for a buyer notification about an order that moved to the given status
+     */
+    public static OrderEvent newEvent(Order order, Order.OrderStatus status, String message) {
+        OrderEvent event = new OrderEvent();
+        event.setOrderId(order.getId());
+        event.setBuyerId(order.getBuyerId());
+        event.setStatus(status.toString());
+        event.setMessage(message);
+        event.setNotificationCreated(false);
+        event.setAttempts(0);
+        return event;
+    }
+    
+    /**
+     * Queue buyer notification events. Joins the caller's transaction, so nothing is delivered unless it commits.
+     */
+    public void enqueue(List<OrderEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        orderEventRepository.saveAll(events);
+        
+        worker.wakeUpAfterCommit();
+    }
+    
+    @Scheduled(initialDelayString = "${notifications.outbox.initial-delay-ms:10000}",
+               fixedDelayString = "${notifications.outbox.poll-interval-ms:10000}")
+    public void poll() {
+        wakeUp();
+    }
+    
+    public void wakeUp() {
+        worker.wakeUp();
+    }
+    
+    private int dispatchBatch() {
+        List<OrderEvent> batch = transactionTemplate.execute(status -> claimBatch());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        batches.incrementAndGet();
+        
+        List<PushNotificationService.BuyerPush> pushes = new ArrayList<>(batch.size());
+        Map<PushNotificationService.BuyerPush, OrderEvent> eventsByPush = new IdentityHashMap<>();
+        for (OrderEvent event : batch) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("orderId", event.getOrderId());
+            data.put("status", event.getStatus());
+            data.put("type", "order_update");
+            PushNotificationService.BuyerPush push = new PushNotificationService.BuyerPush(
+                    event.getBuyerId(), BUYER_NOTIFICATION_TITLE, event.getMessage(), data);
+            pushes.add(push);
+            eventsByPush.put(push, event);
+        }
+        
+        List<PushNotificationService.BuyerPush> failedPushes;
+        try {
+            failedPushes = pushNotificationService.trySendNotificationsToBuyers(pushes);
+        } catch (RuntimeException e) {
+            log.error("Push delivery failed: {}", e.getMessage());
+            failedPushes = pushes;
+        }
+        Set<OrderEvent> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PushNotificationService.BuyerPush push : failedPushes) {
+            failed.add(eventsByPush.get(push));
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> recordResults(batch, failed));
+        return batch.size();
+    }
+    
+    /**
+     * Claim (lease) the next due events and create their in-app notifications in the same
+     * transaction, so a retry never creates the buyer notification twice
+     */
+    private List<OrderEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderEvent> batch = orderEventRepository.lockDueBatch(now, batchSize);
+        List<BuyerNotification> notifications = new ArrayList<>();
+        for (OrderEvent event : batch) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+            if (!Boolean.TRUE.equals(event.getNotificationCreated())) {
+                BuyerNotification notification = new BuyerNotification();
+                notification.setBuyerId(event.getBuyerId());
+                notification.setOrderId(event.getOrderId());
+                notification.setMessage(event.getMessage());
+                notification.setIsRead(false);
+                notification.setCreatedAt(now);
+                notifications.add(notification);
+                event.setNotificationCreated(true);
+            }
+        }
+        buyerNotificationRepository.saveAll(notifications);
+        return orderEventRepository.saveAll(batch);
+    }
+    
+    private void recordResults(List<OrderEvent> batch, Set<OrderEvent> failed) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> finished = new ArrayList<>();
+        List<OrderEvent> retries = new ArrayList<>();
+        
+        for (OrderEvent event : batch) {
+            if (!failed.contains(event)) {
+                delivered.incrementAndGet();
+                finished.add(event.getId());
+                continue;
+            }
+            
+            failedAttempts.incrementAndGet();
+            if (event.getAttempts() >= maxAttempts) {
+                // The in-app notification exists; only the push is given up
+                dropped.incrementAndGet();
+                finished.add(event.getId());
+                log.error("❌ Push for order {} ({}) dropped after {} attempts",
+                        event.getOrderId(), event.getStatus(), event.getAttempts());
+            } else {
+                event.setLastError("Push delivery failed");
+                event.setNextAttemptAt(now.plusSeconds(
+                        OutboxWorker.backoffSeconds(event.getAttempts(), baseBackoffSeconds, maxBackoffSeconds)));
+                retries.add(event);
+                log.warn("Push for order {} failed (attempt {}/{}), retrying at {}",
+                        event.getOrderId(), event.getAttempts(), maxAttempts, event.getNextAttemptAt());
+            }
+        }
+        
+        if (!finished.isEmpty()) {
+            orderEventRepository.deleteAllByIdInBatch(finished);
+        }
+        if (!retries.isEmpty()) {
+            orderEventRepository.saveAll(retries);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdown();
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "orderEvents";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("delivered", delivered.get());
+        metrics.put("failedAttempts", failedAttempts.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("batches", batches.get());
+        return metrics;
+    }
+}
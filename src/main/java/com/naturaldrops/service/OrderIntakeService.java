@@ -0,0 +1,260 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.dto.request.CreateOrderRequest;
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.exception.TooManyRequestsException;
+import com.naturaldrops.util.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional micro-batched intake for POST /api/orders (orders.intake.enabled), for the morning bursts.
+ *
+ * Requests are put on a bounded queue and the caller waits for its order. A single writer thread takes
+ * up to max-batch-size orders, or whatever arrived within max-wait-ms of the first one, and creates them
+ * all in one transaction, so the orders, items, status history and admin notifications go out as
+ * batched inserts with one commit. If the batch fails (e.g. one order references an unknown menu item),
+ * its orders are retried one transaction each, so only the bad order fails.
+ *
+ * When the queue is full callers get 429 right away. A caller that times out while its order is still
+ * queued withdraws it (nothing was written) and gets 429 as well; once its batch is being written it
+ * waits for the commit instead. Disabled, orders are created directly on the request thread as before.
+ */
+@Service
+@Slf4j
+public class OrderIntakeService implements MetricsSource {
+    
+    private static final String BUSY_MESSAGE = "Too many orders are being placed right now. Please try again shortly.";
+    
+    private final OrderService orderService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long responseTimeoutMillis;
+    private final BlockingQueue<PendingOrder> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder ordersWritten = new LongAdder();
+    private final LongAdder ordersFailed = new LongAdder();
+    private final LongAdder fallbackBatches = new LongAdder();
+    private volatile int lastBatchSize;
+    private volatile long lastBatchMillis;
+    
+    public OrderIntakeService(OrderService orderService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${orders.intake.enabled:false}") boolean enabled,
+                              @Value("${orders.intake.queue-capacity:500}") int queueCapacity,
+                              @Value("${orders.intake.max-batch-size:50}") int maxBatchSize,
+                              @Value("${orders.intake.max-wait-ms:5}") long maxWaitMillis,
+                              @Value("${orders.intake.response-timeout-ms:10000}") long responseTimeoutMillis) {
+        this.orderService = orderService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        
+        if (enabled) {
+            writer = new Thread(this::runWriter, "order-intake");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Order intake batching enabled: queue capacity {}, batches of up to {} orders / {} ms",
+                    queueCapacity, this.maxBatchSize, maxWaitMillis);
+        } else {
+            writer = null;
+        }
+    }
+    
+    /**
+     * Create an order, through the batching queue when enabled
+     */
+    public Order createOrder(CreateOrderRequest request) {
+        if (!enabled) {
+            return orderService.createOrder(request);
+        }
+        
+        PendingOrder pending = new PendingOrder(request);
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new TooManyRequestsException(BUSY_MESSAGE, 1);
+        }
+        submitted.increment();
+        
+        try {
+            try {
+                return pending.result.get(responseTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (queue.remove(pending)) {
+                    timedOut.increment();
+                    throw new TooManyRequestsException(BUSY_MESSAGE, 1);
+                }
+                // Already part of a batch being written (bounded by the transaction timeout)
+                return pending.result.get();
+            }
+        } catch (InterruptedException e) {
+            queue.remove(pending);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while placing order", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Order creation failed", cause);
+        }
+    }
+    
+    private void runWriter() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                
+                // Collect more orders until the batch is full or the first one has waited max-wait-ms
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                failAll(batch, new TooManyRequestsException(BUSY_MESSAGE, 1));
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Order intake batch failed: {}", e.getMessage(), e);
+                failAll(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+        
+        List<PendingOrder> left = new ArrayList<>();
+        queue.drainTo(left);
+        failAll(left, new TooManyRequestsException(BUSY_MESSAGE, 1));
+    }
+    
+    private void writeBatch(List<PendingOrder> batch) {
+        long start = System.nanoTime();
+        try {
+            // createOrder joins this transaction; ids come from pooled sequences, so nothing is flushed
+            // until the commit and the inserts of the whole batch are sent in JDBC batches
+            List<Order> orders = transactionTemplate.execute(status -> {
+                List<Order> created = new ArrayList<>(batch.size());
+                for (PendingOrder pending : batch) {
+                    created.add(orderService.createOrder(pending.request));
+                }
+                return created;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(orders.get(i));
+            }
+            ordersWritten.add(batch.size());
+        } catch (RuntimeException e) {
+            // The whole batch was rolled back; write each order on its own so only the bad one fails
+            fallbackBatches.increment();
+            log.warn("Order intake batch of {} failed ({}), writing its orders one by one", batch.size(), e.getMessage());
+            for (PendingOrder pending : batch) {
+                try {
+                    pending.result.complete(orderService.createOrder(pending.request));
+                    ordersWritten.increment();
+                } catch (RuntimeException orderFailure) {
+                    ordersFailed.increment();
+                    pending.result.completeExceptionally(orderFailure);
+                }
+            }
+        }
+        batches.increment();
+        lastBatchSize = batch.size();
+        lastBatchMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+    
+    private static void failAll(List<PendingOrder> pendingOrders, RuntimeException failure) {
+        for (PendingOrder pending : pendingOrders) {
+            pending.result.completeExceptionally(failure);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer != null) {
+            try {
+                // Let the current batch commit; the writer fails whatever is still queued
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "orderIntake";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        metrics.put("enabled", enabled);
+        metrics.put("queued", queue.size());
+        metrics.put("submitted", submitted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("timedOut", timedOut.sum());
+        metrics.put("batches", batchCount);
+        metrics.put("ordersWritten", ordersWritten.sum());
+        metrics.put("ordersFailed", ordersFailed.sum());
+        metrics.put("fallbackBatches", fallbackBatches.sum());
+        long batchedOrders = ordersWritten.sum() + ordersFailed.sum();
+        metrics.put("averageBatchSize", batchCount > 0 ? (double) batchedOrders / batchCount : 0.0);
+        metrics.put("lastBatchSize", lastBatchSize);
+        metrics.put("lastBatchMillis", lastBatchMillis);
+        return metrics;
+    }
+    
+    private static final class PendingOrder {
+        private final CreateOrderRequest request;
+        private final CompletableFuture<Order> result = new CompletableFuture<>();
+        
+        private PendingOrder(CreateOrderRequest request) {
+            this.request = request;
+        }
+    }
+}
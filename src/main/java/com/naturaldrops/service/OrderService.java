@@ -2,116 +2,368 @@ package com.naturaldrops.service;
 
 import com.naturaldrops.dto.request.CreateOrderRequest;
 import com.naturaldrops.dto.request.UpdateOrderRequest;
-import com.naturaldrops.entity.MenuItem;
+import com.naturaldrops.dto.response.BulkOrderActionResponse;
+import com.naturaldrops.dto.response.OrderPage;
+import com.naturaldrops.dto.response.OrderSummaryResponse;
 import com.naturaldrops.entity.Order;
 import com.naturaldrops.entity.OrderItem;
 import com.naturaldrops.entity.OrderStatusHistory;
+import com.naturaldrops.exception.ConflictException;
+import com.naturaldrops.exception.PreconditionFailedException;
 import com.naturaldrops.exception.ResourceNotFoundException;
+import com.naturaldrops.repository.MenuItemRepository;
 import com.naturaldrops.repository.OrderRepository;
 import com.naturaldrops.repository.OrderStatusHistoryRepository;
+import com.naturaldrops.util.OrderCursor;
+import com.naturaldrops.util.OrderFilter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
     
+    // Largest page a client may request with ?limit=
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    // Shortest search text; shorter strings have no trigram for the search index to narrow on
+    public static final int MIN_SEARCH_LENGTH = 3;
+    
+    // Open date bounds for the search queries (so they never take null parameters)
+    private static final LocalDateTime RANGE_START = LocalDate.of(2000, 1, 1).atStartOfDay();
+    private static final LocalDateTime RANGE_END = LocalDate.of(9999, 12, 31).atTime(23, 59, 59);
+    
+    // Tries for an update that keeps losing optimistic-lock races before giving up with 409
+    private static final int UPDATE_ATTEMPTS = 3;
+    
+    // Buyer checkout pricing: 5% tax and a fixed delivery charge on top of the item subtotal
+    private static final BigDecimal TAX_RATE = new BigDecimal("0.05");
+    private static final BigDecimal DELIVERY_CHARGE = new BigDecimal("20.00");
+    
     private final OrderRepository orderRepository;
     private final OrderStatusHistoryRepository orderStatusHistoryRepository;
     private final NotificationService notificationService;
     private final MenuService menuService;
+    private final OrderStreamService orderStreamService;
+    private final TransactionTemplate transactionTemplate;
     
-    public List<Order> getAllOrders() {
-        return orderRepository.findAllByOrderByOrderDateDesc();
+    /**
+     * Filter for the order list endpoints from request parameters: any of the given statuses, yyyy-MM-dd
+     * date range, buyer, payment status, delivery partner and sort (newest / oldest). Blank values are ignored.
+     */
+    public OrderFilter buildFilter(List<String> statuses, String fromDate, String toDate, Long buyerId,
+                                   String paymentStatus, String deliveryPartner, String sort) {
+        OrderFilter filter = new OrderFilter();
+        if (statuses != null) {
+            for (String status : statuses) {
+                Order.OrderStatus parsed = parseStatus(status);
+                if (parsed != null) {
+                    filter.getStatuses().add(parsed);
+                }
+            }
+        }
+        filter.setFrom(parseFromDate(fromDate));
+        filter.setTo(parseToDate(toDate));
+        filter.setBuyerId(buyerId);
+        if (paymentStatus != null && !paymentStatus.trim().isEmpty()) {
+            filter.setPaymentStatus(Order.PaymentStatus.valueOf(paymentStatus.trim().toUpperCase()));
+        }
+        if (deliveryPartner != null && !deliveryPartner.trim().isEmpty()) {
+            filter.setDeliveryPartner(deliveryPartner.trim());
+        }
+        filter.setSort(parseSort(sort));
+        return filter;
     }
-
-    public List<Order> getOrdersFiltered(String status, String fromDate, String toDate) {
-        Order.OrderStatus parsedStatus = null;
-        if (status != null && !status.trim().isEmpty()) {
-            parsedStatus = Order.OrderStatus.valueOf(status.trim().toLowerCase());
+    
+    /**
+     * Filter for GET /api/orders/filter: today / week / month, anything else means all orders
+     */
+    public OrderFilter buildPeriodFilter(String period, String sort) {
+        LocalDateTime[] range = periodRange(period);
+        OrderFilter filter = OrderFilter.between(range[0], range[1]);
+        filter.setSort(parseSort(sort));
+        return filter;
+    }
+    
+    /**
+     * All orders matching the filter, with items (unpaged list endpoints and PDF export)
+     */
+    public List<Order> getOrdersFiltered(OrderFilter filter) {
+        return orderRepository.findAllWithItems(filter);
+    }
+    
+    /**
+     * [from, to] for a /filter period (null = open)
+     */
+    private static LocalDateTime[] periodRange(String period) {
+        switch (period.toLowerCase()) {
+            case "today":
+                return new LocalDateTime[] { LocalDateTime.now().truncatedTo(ChronoUnit.DAYS), null };
+            case "week":
+                return new LocalDateTime[] { LocalDateTime.now().minusDays(7), null };
+            case "month":
+                return new LocalDateTime[] {
+                        LocalDateTime.now().withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS), LocalDateTime.now() };
+            default:
+                return new LocalDateTime[] { null, null };
         }
-
-        LocalDateTime from = null;
-        LocalDateTime to = null;
-        if (fromDate != null && !fromDate.trim().isEmpty()) {
-            LocalDate d = LocalDate.parse(fromDate.trim()); // yyyy-MM-dd
-            from = d.atStartOfDay();
+    }
+    
+    /**
+     * One page of orders matching the filter after the given cursor, with items loaded.
+     * Only the page's ids are read from the index, then the orders and their items are
+     * fetched in a single query, so cost no longer grows with the size of the order history.
+     */
+    public OrderPage<Order> getOrderPage(OrderFilter filter, String cursor, int limit, boolean includeTotal) {
+        int pageSize = clampPageSize(limit);
+        List<Long> ids = orderRepository.findIdPage(filter, OrderCursor.decode(cursor), pageSize + 1);
+        
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
         }
-        if (toDate != null && !toDate.trim().isEmpty()) {
-            LocalDate d = LocalDate.parse(toDate.trim()); // yyyy-MM-dd
-            to = d.atTime(LocalTime.MAX);
+        List<Order> orders = loadWithItemsInOrder(ids);
+        String nextCursor = hasMore && !orders.isEmpty()
+                ? OrderCursor.after(orders.get(orders.size() - 1)).encode()
+                : null;
+        
+        Long totalCount = includeTotal ? orderRepository.countFiltered(filter) : null;
+        return new OrderPage<>(orders, nextCursor, totalCount);
+    }
+    
+    /**
+     * Same page as {@link #getOrderPage} but as summary rows: one aggregate query
+     * for the page (item count, first item name) and no OrderItem entities.
+     */
+    public OrderPage<OrderSummaryResponse> getOrderSummaryPage(OrderFilter filter, String cursor, int limit,
+                                                               boolean includeTotal) {
+        int pageSize = clampPageSize(limit);
+        List<Long> ids = orderRepository.findIdPage(filter, OrderCursor.decode(cursor), pageSize + 1);
+        Long totalCount = includeTotal ? orderRepository.countFiltered(filter) : null;
+        return toSummaryPage(ids, pageSize, totalCount);
+    }
+    
+    /**
+     * Search orders by buyer name, phone, delivery address or tracking number (case-insensitive substring),
+     * combined with status / fromDate / toDate filters. Returns keyset-paged
+     * summary rows, newest first. Matching runs on the pg_trgm index, so it stays fast on large tables.
+     */
+    public OrderPage<OrderSummaryResponse> searchOrders(String query, String status, String fromDate, String toDate,
+                                                        String cursor, int limit, boolean includeTotal) {
+        String text = query != null ? query.trim().toLowerCase() : "";
+        if (text.length() < MIN_SEARCH_LENGTH) {
+            throw new IllegalArgumentException("Search text must be at least " + MIN_SEARCH_LENGTH + " characters");
         }
-
-        // No filters -> all
-        if (parsedStatus == null && from == null && to == null) {
-            return getAllOrders();
+        String pattern = "%" + escapeLike(text) + "%";
+        Order.OrderStatus parsedStatus = parseStatus(status);
+        LocalDateTime from = parseFromDate(fromDate);
+        LocalDateTime to = parseToDate(toDate);
+        LocalDateTime startDate = from != null ? from : RANGE_START;
+        LocalDateTime endDate = to != null ? to : RANGE_END;
+        OrderCursor position = OrderCursor.decode(cursor);
+        int pageSize = clampPageSize(limit);
+        
+        List<Long> ids;
+        Long totalCount = null;
+        if (parsedStatus != null) {
+            ids = orderRepository.searchIdPageByStatus(pattern, parsedStatus.name(), startDate, endDate,
+                    position.getOrderDate(), position.getId(), pageSize + 1);
+            if (includeTotal) {
+                totalCount = orderRepository.countSearchByStatus(pattern, parsedStatus.name(), startDate, endDate);
+            }
+        } else {
+            ids = orderRepository.searchIdPage(pattern, startDate, endDate,
+                    position.getOrderDate(), position.getId(), pageSize + 1);
+            if (includeTotal) {
+                totalCount = orderRepository.countSearch(pattern, startDate, endDate);
+            }
         }
-
-        // Normalize missing bound(s)
-        if (from != null && to == null) {
-            to = LocalDate.now().atTime(LocalTime.MAX);
-        } else if (from == null && to != null) {
-            from = LocalDate.of(2000, 1, 1).atStartOfDay();
+        return toSummaryPage(ids, pageSize, totalCount);
+    }
+    
+    /**
+     * Escape LIKE wildcards so search text is matched literally
+     */
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
+    /**
+     * Summary rows for a page of ids (pageSize + 1 ids, the extra one only signals a next page)
+     */
+    private OrderPage<OrderSummaryResponse> toSummaryPage(List<Long> ids, int pageSize, Long totalCount) {
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
         }
-
-        // Date range only
-        if (parsedStatus == null && from != null && to != null) {
-            return orderRepository.findOrdersBetweenDates(from, to);
+        
+        List<OrderSummaryResponse> summaries = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            Map<Long, OrderSummaryResponse> byId = new HashMap<>();
+            for (Object[] row : orderRepository.findSummaryRowsByIdIn(ids)) {
+                OrderSummaryResponse summary = toSummary(row);
+                byId.put(summary.getId(), summary);
+            }
+            for (Long id : ids) {
+                OrderSummaryResponse summary = byId.get(id);
+                if (summary != null) {
+                    summaries.add(summary);
+                }
+            }
         }
-
-        // Status only
-        if (parsedStatus != null && from == null && to == null) {
-            return orderRepository.findByStatusOrderByOrderDateDesc(parsedStatus);
+        
+        String nextCursor = null;
+        if (hasMore && !summaries.isEmpty()) {
+            OrderSummaryResponse last = summaries.get(summaries.size() - 1);
+            nextCursor = new OrderCursor(last.getOrderDate(), last.getId()).encode();
         }
-
-        // Status + date range
-        if (parsedStatus != null && from != null && to != null) {
-            return orderRepository.findOrdersByStatusBetweenDates(parsedStatus, from, to);
+        return new OrderPage<>(summaries, nextCursor, totalCount);
+    }
+    
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+    
+    /**
+     * Map a row of OrderRepository.findSummaryRowsByIdIn
+     */
+    private static OrderSummaryResponse toSummary(Object[] row) {
+        OrderSummaryResponse summary = new OrderSummaryResponse();
+        summary.setId(((Number) row[0]).longValue());
+        summary.setBuyerId(((Number) row[1]).longValue());
+        summary.setBuyerName((String) row[2]);
+        summary.setStatus(Order.OrderStatus.valueOf((String) row[3]));
+        summary.setTotal((BigDecimal) row[4]);
+        summary.setOrderDate(((Timestamp) row[5]).toLocalDateTime());
+        summary.setPaymentStatus(row[6] != null ? Order.PaymentStatus.valueOf((String) row[6]) : null);
+        summary.setItemCount(((Number) row[7]).intValue());
+        summary.setFirstItemName((String) row[8]);
+        return summary;
+    }
+    
+    /**
+     * Load orders with items and return them in the order of the given ids
+     */
+    private List<Order> loadWithItemsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
-
-        return getAllOrders();
+        Map<Long, Order> byId = new HashMap<>();
+        for (Order order : orderRepository.findAllWithItemsByIdIn(ids)) {
+            byId.put(order.getId(), order);
+        }
+        List<Order> orders = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Order order = byId.get(id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
     }
     
-    public Order getOrderById(Long id) {
-        return orderRepository.findByIdWithItems(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + id));
+    private static Order.OrderStatus parseStatus(String status) {
+        if (status == null || status.trim().isEmpty()) {
+            return null;
+        }
+        return Order.OrderStatus.valueOf(status.trim().toLowerCase());
     }
     
-    public List<Order> getOrdersByBuyerId(Long buyerId) {
-        return orderRepository.findByBuyerIdOrderByOrderDateDesc(buyerId);
+    private static OrderFilter.Sort parseSort(String sort) {
+        if (sort == null || sort.trim().isEmpty()) {
+            return OrderFilter.Sort.newest;
+        }
+        return OrderFilter.Sort.valueOf(sort.trim().toLowerCase());
     }
     
-    public List<Order> getOrdersByStatus(Order.OrderStatus status) {
-        return orderRepository.findByStatusOrderByOrderDateDesc(status);
+    private static LocalDateTime parseFromDate(String fromDate) {
+        if (fromDate == null || fromDate.trim().isEmpty()) {
+            return null;
+        }
+        return LocalDate.parse(fromDate.trim()).atStartOfDay(); // yyyy-MM-dd
     }
     
-    public List<Order> getOrdersByBuyerIdAndStatus(Long buyerId, Order.OrderStatus status) {
-        return orderRepository.findByBuyerIdAndStatusOrderByOrderDateDesc(buyerId, status);
+    private static LocalDateTime parseToDate(String toDate) {
+        if (toDate == null || toDate.trim().isEmpty()) {
+            return null;
+        }
+        return LocalDate.parse(toDate.trim()).atTime(LocalTime.MAX); // yyyy-MM-dd
     }
     
-    public List<Order> getTodayOrders() {
-        LocalDateTime startOfDay = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
-        return orderRepository.findByOrderDateAfterOrderByOrderDateDesc(startOfDay);
+    public Order getOrderById(Long id) {
+        return orderRepository.findByIdWithItems(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + id));
     }
     
-    public List<Order> getWeekOrders() {
-        LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
-        return orderRepository.findByOrderDateAfterOrderByOrderDateDesc(weekAgo);
+    /**
+     * Current version of an order (its ETag), without loading it
+     */
+    public Optional<Long> findOrderVersion(Long id) {
+        return orderRepository.findVersionById(id);
     }
     
-    public List<Order> getMonthOrders() {
-        LocalDateTime monthStart = LocalDateTime.now().withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-        LocalDateTime monthEnd = LocalDateTime.now();
-        return orderRepository.findOrdersBetweenDates(monthStart, monthEnd);
+    /**
+     * Run a single-order update (one of the transitions below) with optimistic locking.
+     *
+     * With expected versions (If-Match), the order's version is read and row-locked first and the update
+     * only runs if it still matches - a stale request fails with 412 before the order is even loaded.
+     * Without them, an update that loses a race with a concurrent change is retried on the fresh order.
+     */
+    public Order applyUpdate(Long id, Set<Long> expectedVersions, Supplier<Order> update) {
+        if (expectedVersions == null) {
+            return retryOnConflict(update);
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                Long current = orderRepository.lockVersionById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + id));
+                if (!expectedVersions.contains(current)) {
+                    throw new PreconditionFailedException("Order has been modified since it was loaded, please reload it");
+                }
+                return update.get();
+            });
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException("Order has been modified since it was loaded, please reload it");
+        }
+    }
+    
+    /**
+     * Run a transactional update, re-running it (in a new transaction, on fresh data) when it fails
+     * an optimistic-lock check because another request changed one of its orders first.
+     * Call it outside any transaction (from the controller), or there is nothing to re-run.
+     */
+    public <T> T retryOnConflict(Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= UPDATE_ATTEMPTS) {
+                    throw new ConflictException("Order is being changed by another request, please try again");
+                }
+            }
+        }
     }
     
     public List<OrderStatusHistory> getOrderStatusHistory(Long orderId) {
@@ -139,21 +391,46 @@ public class OrderService {
             order.setLongitude(request.getLongitude());
         }
         
-        order.setTotal(request.getTotal());
         order.setStatus(Order.OrderStatus.pending);
         order.setOrderDate(LocalDateTime.now());
         
-        // Add order items
+        // Add order items, priced from the catalog rather than trusting the client's rates
+        Set<Long> menuItemIds = new LinkedHashSet<>();
+        for (CreateOrderRequest.OrderItemRequest itemRequest : request.getItems()) {
+            if (itemRequest.getMenuItemId() != null) {
+                menuItemIds.add(itemRequest.getMenuItemId());
+            }
+        }
+        Map<Long, MenuItemRepository.MenuItemPrice> prices = menuService.getMenuItemPrices(menuItemIds);
+        
+        BigDecimal subtotalSum = BigDecimal.ZERO;
         for (CreateOrderRequest.OrderItemRequest itemRequest : request.getItems()) {
             OrderItem orderItem = new OrderItem();
             orderItem.setMenuItemId(itemRequest.getMenuItemId());
             orderItem.setItemName(itemRequest.getItemName());
             orderItem.setQuantity(itemRequest.getQuantity());
             orderItem.setRate(itemRequest.getRate());
-            orderItem.setCartQuantity(itemRequest.getCartQuantity());
+            orderItem.setCartQuantity(itemRequest.getCartQuantity() != null
+                    ? itemRequest.getCartQuantity() : itemRequest.getQuantity());
             orderItem.setSubtotal(itemRequest.getSubtotal());
+            
+            MenuItemRepository.MenuItemPrice price = prices.get(itemRequest.getMenuItemId());
+            if (price != null) {
+                if (orderItem.getCartQuantity() == null || orderItem.getCartQuantity() < 1) {
+                    throw new IllegalArgumentException("quantity must be at least 1");
+                }
+                BigDecimal rate = price.getRate() != null ? price.getRate() : BigDecimal.ZERO;
+                orderItem.setItemName(price.getName());
+                orderItem.setRate(rate);
+                orderItem.setSubtotal(rate.multiply(BigDecimal.valueOf(orderItem.getCartQuantity())));
+            }
             order.addItem(orderItem);
+            
+            if (orderItem.getSubtotal() != null) {
+                subtotalSum = subtotalSum.add(orderItem.getSubtotal());
+            }
         }
+        order.setTotal(checkoutTotal(subtotalSum));
         
         Order savedOrder = orderRepository.save(order);
         
@@ -163,6 +440,7 @@ public class OrderService {
         // Create notification for admin
         notificationService.createAdminNotification(savedOrder);
         
+        orderStreamService.publish(savedOrder, "created");
         return savedOrder;
     }
 
@@ -191,12 +469,8 @@ public class OrderService {
 
         // If order already confirmed, revert old stock impact first (so inventory remains correct)
         if (order.getStatus() == Order.OrderStatus.confirmed) {
-            for (OrderItem item : order.getItems()) {
-                if (item.getMenuItemId() != null) {
-                    // cartQuantity is what we originally deducted
-                    menuService.restoreStock(item.getMenuItemId(), item.getCartQuantity(), order.getId(), updatedBy);
-                }
-            }
+            // cartQuantity is what we originally deducted
+            menuService.releaseStock(toStockLines(order.getItems()), order.getId(), updatedBy);
         }
 
         // Update customer details
@@ -209,10 +483,8 @@ public class OrderService {
             order.setBuyerPhone(phone.isEmpty() ? null : phone);
         }
 
-        // Replace order items
-        order.getItems().clear();
-
-        BigDecimal subtotalSum = BigDecimal.ZERO;
+        // Replace order items, priced from one catalog lookup for all lines
+        Set<Long> menuItemIds = new LinkedHashSet<>();
         for (UpdateOrderRequest.UpdateOrderItemRequest it : request.getItems()) {
             if (it.getMenuItemId() == null) {
                 throw new IllegalArgumentException("menuItemId is required");
@@ -220,15 +492,22 @@ public class OrderService {
             if (it.getQuantity() == null || it.getQuantity() < 1) {
                 throw new IllegalArgumentException("quantity must be at least 1");
             }
+            menuItemIds.add(it.getMenuItemId());
+        }
+        Map<Long, MenuItemRepository.MenuItemPrice> prices = menuService.getMenuItemPrices(menuItemIds);
 
-            MenuItem menuItem = menuService.getMenuItemById(it.getMenuItemId());
-            BigDecimal rate = menuItem.getRate() != null ? menuItem.getRate() : BigDecimal.ZERO;
+        order.getItems().clear();
+
+        BigDecimal subtotalSum = BigDecimal.ZERO;
+        for (UpdateOrderRequest.UpdateOrderItemRequest it : request.getItems()) {
+            MenuItemRepository.MenuItemPrice price = prices.get(it.getMenuItemId());
+            BigDecimal rate = price.getRate() != null ? price.getRate() : BigDecimal.ZERO;
             int qty = it.getQuantity();
             BigDecimal itemSubtotal = rate.multiply(BigDecimal.valueOf(qty));
 
             OrderItem orderItem = new OrderItem();
-            orderItem.setMenuItemId(menuItem.getId());
-            orderItem.setItemName(menuItem.getName());
+            orderItem.setMenuItemId(price.getId());
+            orderItem.setItemName(price.getName());
             orderItem.setQuantity(qty);
             orderItem.setCartQuantity(qty);
             orderItem.setRate(rate);
@@ -238,23 +517,16 @@ public class OrderService {
             subtotalSum = subtotalSum.add(itemSubtotal);
         }
 
-        // Recalculate total similar to buyer checkout: 5% tax + fixed delivery 20
-        BigDecimal tax = subtotalSum.multiply(new BigDecimal("0.05"));
-        BigDecimal deliveryCharge = new BigDecimal("20.00");
-        BigDecimal total = subtotalSum.add(tax).add(deliveryCharge).setScale(2, RoundingMode.HALF_UP);
-        order.setTotal(total);
+        order.setTotal(checkoutTotal(subtotalSum));
 
         Order saved = orderRepository.save(order);
 
         // If confirmed, apply new stock impact
         if (saved.getStatus() == Order.OrderStatus.confirmed) {
-            for (OrderItem item : saved.getItems()) {
-                if (item.getMenuItemId() != null) {
-                    menuService.deductStock(item.getMenuItemId(), item.getCartQuantity(), saved.getId(), updatedBy);
-                }
-            }
+            menuService.reserveStock(toStockLines(saved.getItems()), saved.getId(), updatedBy);
         }
 
+        orderStreamService.publish(saved, "updated");
         return saved;
     }
     
@@ -266,12 +538,8 @@ public class OrderService {
             throw new IllegalStateException("Only pending orders can be confirmed");
         }
         
-        // Check and deduct stock for all items
-        for (OrderItem item : order.getItems()) {
-            if (item.getMenuItemId() != null) {
-                menuService.deductStock(item.getMenuItemId(), item.getCartQuantity(), order.getId(), confirmedBy);
-            }
-        }
+        // Check and deduct stock for all items in one batch (all or nothing)
+        menuService.reserveStock(toStockLines(order.getItems()), order.getId(), confirmedBy);
         
         Order.OrderStatus oldStatus = order.getStatus();
         order.setStatus(Order.OrderStatus.confirmed);
@@ -290,6 +558,7 @@ public class OrderService {
             e.printStackTrace();
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -312,6 +581,7 @@ public class OrderService {
         recordStatusChange(id, oldStatus, Order.OrderStatus.processing, updatedBy, 
                           "Order in processing with tracking: " + trackingNumber);
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -350,6 +620,7 @@ public class OrderService {
             e.printStackTrace();
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -396,6 +667,7 @@ public class OrderService {
             e.printStackTrace();
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -411,11 +683,7 @@ public class OrderService {
         
         // Restore stock if order was confirmed or processing
         if (oldStatus == Order.OrderStatus.confirmed || oldStatus == Order.OrderStatus.processing) {
-            for (OrderItem item : order.getItems()) {
-                if (item.getMenuItemId() != null) {
-                    menuService.restoreStock(item.getMenuItemId(), item.getCartQuantity(), order.getId(), canceledBy);
-                }
-            }
+            menuService.releaseStock(toStockLines(order.getItems()), order.getId(), canceledBy);
         }
         
         order.setStatus(Order.OrderStatus.canceled);
@@ -434,6 +702,7 @@ public class OrderService {
             e.printStackTrace();
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -459,6 +728,7 @@ public class OrderService {
             }
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
@@ -521,9 +791,246 @@ public class OrderService {
             e.printStackTrace();
         }
         
+        orderStreamService.publish(updatedOrder, "updated");
         return updatedOrder;
     }
     
+    /**
+     * Confirm many pending orders at once. Stock for all of them is deducted in one batch;
+     * an order whose items are short fails on its own and the rest are confirmed.
+     */
+    @Transactional
+    public BulkOrderActionResponse bulkConfirm(List<Long> orderIds, String confirmedBy) {
+        BulkBatch batch = loadBulkBatch(orderIds);
+        
+        Map<Long, List<MenuService.StockLine>> linesByOrder = new LinkedHashMap<>();
+        for (Order order : batch.orders()) {
+            if (order.getStatus() != Order.OrderStatus.pending) {
+                batch.fail(order.getId(), "Only pending orders can be confirmed");
+            } else {
+                linesByOrder.put(order.getId(), toStockLines(order.getItems()));
+            }
+        }
+        Map<Long, RuntimeException> rejected = menuService.reserveStockForOrders(linesByOrder, confirmedBy);
+        
+        LocalDateTime now = LocalDateTime.now();
+        for (Long id : linesByOrder.keySet()) {
+            if (rejected.containsKey(id)) {
+                batch.fail(id, rejected.get(id).getMessage());
+                continue;
+            }
+            Order order = batch.order(id);
+            order.setStatus(Order.OrderStatus.confirmed);
+            order.setConfirmedBy(confirmedBy);
+            order.setStatusUpdatedAt(now);
+            batch.succeed(order, Order.OrderStatus.pending, confirmedBy, "Order confirmed, stock deducted");
+        }
+        return finishBulk(batch, Order.OrderStatus.confirmed);
+    }
+    
+    /**
+     * Set many confirmed orders On The Way with the same delivery time
+     */
+    @Transactional
+    public BulkOrderActionResponse bulkSetOnTheWay(List<Long> orderIds, Long deliveryTotalSeconds, String updatedBy) {
+        BulkBatch batch = loadBulkBatch(orderIds);
+        
+        long totalSeconds = deliveryTotalSeconds != null ? deliveryTotalSeconds : 0L;
+        int legacyMinutes = (int) Math.max(1, Math.round(Math.ceil(totalSeconds / 60.0)));
+        LocalDateTime now = LocalDateTime.now();
+        long startTimestamp = System.currentTimeMillis() / 1000;
+        
+        for (Order order : batch.orders()) {
+            if (order.getStatus() != Order.OrderStatus.confirmed) {
+                batch.fail(order.getId(), "Only confirmed orders can be set to On The Way");
+                continue;
+            }
+            order.setStatus(Order.OrderStatus.processing);
+            order.setDeliveryTimeMinutes(legacyMinutes);
+            order.setStartTime(now);
+            order.setDeliveryTotalSeconds(totalSeconds);
+            order.setDeliveryStartTimestamp(startTimestamp);
+            order.setStatusUpdatedAt(now);
+            batch.succeed(order, Order.OrderStatus.confirmed, updatedBy,
+                    "Order set to On The Way with delivery time: " + totalSeconds + " seconds");
+        }
+        return finishBulk(batch, Order.OrderStatus.processing);
+    }
+    
+    /**
+     * Cancel many orders at once; stock of confirmed / processing orders is restored in one batch.
+     * Already canceled orders are reported as successful without being changed again.
+     */
+    @Transactional
+    public BulkOrderActionResponse bulkCancel(List<Long> orderIds, String canceledBy, String reason) {
+        BulkBatch batch = loadBulkBatch(orderIds);
+        
+        Map<Long, List<MenuService.StockLine>> linesByOrder = new LinkedHashMap<>();
+        List<Order> toCancel = new ArrayList<>();
+        for (Order order : batch.orders()) {
+            if (order.getStatus() == Order.OrderStatus.delivered) {
+                batch.fail(order.getId(), "Delivered orders cannot be canceled");
+            } else if (order.getStatus() != Order.OrderStatus.canceled) {
+                toCancel.add(order);
+                if (order.getStatus() == Order.OrderStatus.confirmed || order.getStatus() == Order.OrderStatus.processing) {
+                    linesByOrder.put(order.getId(), toStockLines(order.getItems()));
+                }
+            }
+        }
+        Map<Long, RuntimeException> rejected = menuService.releaseStockForOrders(linesByOrder, canceledBy);
+        
+        LocalDateTime now = LocalDateTime.now();
+        String notes = "Order canceled: " + (reason != null ? reason : "No reason provided");
+        for (Order order : toCancel) {
+            if (rejected.containsKey(order.getId())) {
+                batch.fail(order.getId(), rejected.get(order.getId()).getMessage());
+                continue;
+            }
+            Order.OrderStatus oldStatus = order.getStatus();
+            order.setStatus(Order.OrderStatus.canceled);
+            order.setStatusUpdatedAt(now);
+            batch.succeed(order, oldStatus, canceledBy, notes);
+        }
+        return finishBulk(batch, Order.OrderStatus.canceled);
+    }
+    
+    /**
+     * Mark many On The Way orders as delivered; each needs its bill finalized.
+     * Already delivered orders are reported as successful (same as the single endpoint).
+     */
+    @Transactional
+    public BulkOrderActionResponse bulkDeliver(List<Long> orderIds, String deliveredBy) {
+        BulkBatch batch = loadBulkBatch(orderIds);
+        
+        LocalDateTime now = LocalDateTime.now();
+        for (Order order : batch.orders()) {
+            if (order.getStatus() == Order.OrderStatus.delivered) {
+                // Already delivered - nothing to do (idempotent, like markAsDelivered)
+                continue;
+            }
+            if (order.getStatus() != Order.OrderStatus.processing) {
+                batch.fail(order.getId(), String.format(
+                        "Only orders in 'processing' (On The Way) status can be marked as delivered. Current status: %s",
+                        order.getStatus()));
+            } else if (order.getFinalBillAmount() == null) {
+                batch.fail(order.getId(),
+                        "Bill must be finalized before marking order as delivered. Please add/edit the bill first.");
+            } else {
+                order.setStatus(Order.OrderStatus.delivered);
+                order.setDeliveredBy(deliveredBy);
+                order.setStatusUpdatedAt(now);
+                batch.succeed(order, Order.OrderStatus.processing, deliveredBy,
+                        String.format("Order delivered. Final bill: ₹%s, Payment status: %s",
+                                order.getFinalBillAmount(), order.getPaymentStatus()));
+            }
+        }
+        return finishBulk(batch, Order.OrderStatus.delivered);
+    }
+    
+    /**
+     * Load all orders of a bulk request (with items) in one query; unknown ids fail right away
+     */
+    private BulkBatch loadBulkBatch(List<Long> orderIds) {
+        Set<Long> requestedIds = new LinkedHashSet<>();
+        for (Long id : orderIds) {
+            if (id != null) {
+                requestedIds.add(id);
+            }
+        }
+        BulkBatch batch = new BulkBatch(requestedIds);
+        if (requestedIds.isEmpty()) {
+            return batch;
+        }
+        for (Order order : orderRepository.findAllWithItemsByIdIn(requestedIds)) {
+            batch.loaded.put(order.getId(), order);
+        }
+        for (Long id : requestedIds) {
+            if (!batch.loaded.containsKey(id)) {
+                batch.fail(id, "Order not found with id: " + id);
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * Write the changed orders and their status history in batches, notify buyers, and build the per-order report
+     */
+    private BulkOrderActionResponse finishBulk(BulkBatch batch, Order.OrderStatus newStatus) {
+        if (!batch.changed.isEmpty()) {
+            // Ids come from the pooled sequence, so both go out as JDBC batches at flush
+            orderRepository.saveAll(batch.changed);
+            orderStatusHistoryRepository.saveAll(batch.history);
+            
+            for (Order order : batch.changed) {
+                orderStreamService.publish(order, "updated");
+            }
+            
+            // Don't fail the bulk action if notifications fail
+            try {
+                notificationService.createBuyerNotifications(batch.changed, newStatus);
+            } catch (Exception e) {
+                log.error("Failed to create buyer notifications: {}", e.getMessage(), e);
+            }
+        }
+        
+        List<BulkOrderActionResponse.Result> results = new ArrayList<>(batch.requestedIds.size());
+        int failed = 0;
+        for (Long id : batch.requestedIds) {
+            String error = batch.errors.get(id);
+            if (error != null) {
+                failed++;
+                Order order = batch.loaded.get(id);
+                results.add(new BulkOrderActionResponse.Result(id, false, order != null ? order.getStatus() : null, error));
+            } else {
+                results.add(new BulkOrderActionResponse.Result(id, true, batch.loaded.get(id).getStatus(), null));
+            }
+        }
+        return new BulkOrderActionResponse(results.size(), results.size() - failed, failed, results);
+    }
+    
+    /**
+     * Working state of one bulk action: loaded orders, per-order errors and the pending writes
+     */
+    private static final class BulkBatch {
+        private final Set<Long> requestedIds;
+        private final Map<Long, Order> loaded = new HashMap<>();
+        private final Map<Long, String> errors = new HashMap<>();
+        private final List<Order> changed = new ArrayList<>();
+        private final List<OrderStatusHistory> history = new ArrayList<>();
+        
+        private BulkBatch(Set<Long> requestedIds) {
+            this.requestedIds = requestedIds;
+        }
+        
+        /**
+         * Loaded orders in request order
+         */
+        private List<Order> orders() {
+            List<Order> orders = new ArrayList<>(loaded.size());
+            for (Long id : requestedIds) {
+                Order order = loaded.get(id);
+                if (order != null) {
+                    orders.add(order);
+                }
+            }
+            return orders;
+        }
+        
+        private Order order(Long id) {
+            return loaded.get(id);
+        }
+        
+        private void fail(Long id, String error) {
+            errors.put(id, error);
+        }
+        
+        private void succeed(Order order, Order.OrderStatus oldStatus, String changedBy, String notes) {
+            changed.add(order);
+            history.add(new OrderStatusHistory(null, order.getId(), oldStatus.toString(),
+                    order.getStatus().toString(), changedBy, order.getStatusUpdatedAt(), notes));
+        }
+    }
+    
     private void recordStatusChange(Long orderId, Order.OrderStatus oldStatus, Order.OrderStatus newStatus, 
                                     String changedBy, String notes) {
         OrderStatusHistory history = new OrderStatusHistory();
@@ -535,5 +1042,25 @@ public class OrderService {
         history.setNotes(notes);
         orderStatusHistoryRepository.save(history);
     }
+    
+    /**
+     * Order total for an item subtotal, as computed at buyer checkout
+     */
+    private static BigDecimal checkoutTotal(BigDecimal subtotal) {
+        BigDecimal tax = subtotal.multiply(TAX_RATE);
+        return subtotal.add(tax).add(DELIVERY_CHARGE).setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * Stock lines (menu item, cart quantity) for a batch stock change; custom items without a menu item are skipped
+     */
+    private static List<MenuService.StockLine> toStockLines(List<OrderItem> items) {
+        List<MenuService.StockLine> lines = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            if (item.getMenuItemId() != null) {
+                lines.add(new MenuService.StockLine(item.getMenuItemId(), item.getCartQuantity()));
+            }
+        }
+        return lines;
+    }
 }
-
@@ -0,0 +1,410 @@
+package com.naturaldrops.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naturaldrops.dto.response.OrderChangeEvent;
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.entity.User;
+import com.naturaldrops.exception.TooManyRequestsException;
+import com.naturaldrops.security.AuthenticatedPrincipal;
+import com.naturaldrops.util.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live order updates over Server-Sent Events (GET /api/orders/stream), so apps don't have to poll.
+ *
+ * OrderService publishes a compact OrderChangeEvent after each committed change. Events are fanned out
+ * on one background thread: sellers / admins get every event, buyers only events for their own orders.
+ * The fan-out thread never writes to a socket; it only puts the event on each subscriber's small bounded
+ * queue, which a sender pool drains (one sender per subscriber at a time). A client that falls
+ * subscriber-queue-size events behind is disconnected and catches up via Last-Event-ID, so one slow
+ * client cannot hold up the others. Connections are async servlet requests, so an idle client holds a
+ * socket but no thread.
+ *
+ * The last events are kept in a bounded ring buffer; a client reconnecting with Last-Event-ID gets the
+ * events it missed, or a "reset" event (refetch everything) if they are no longer buffered or were
+ * sent by an earlier run of the server. Events are per instance - with several instances behind a
+ * load balancer a client only sees changes made on the instance it is connected to.
+ */
+@Service
+@Slf4j
+public class OrderStreamService implements MetricsSource {
+    
+    private static final String EVENT_ORDER = "order";
+    private static final String EVENT_RESET = "reset";
+    
+    // Fan-out tasks only queue events, so this is a safety net rather than a working limit
+    private static final int FAN_OUT_QUEUE_CAPACITY = 10_000;
+    
+    // Event ids are "<instance>-<sequence>", so ids from before a restart are recognized
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    
+    private final ObjectMapper objectMapper;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Registered and still-opening subscriptions, checked against max-connections
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService fanOut = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(FAN_OUT_QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "order-stream");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // At most one queued drain task per subscriber, so this queue is bounded by max-connections
+    private final ExecutorService senders;
+    
+    // Ring buffer of recent events, only touched on the fan-out thread
+    private final BufferedEvent[] buffer;
+    private long nextSequence = 1;
+    
+    @Value("${orders.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+    
+    @Value("${orders.stream.max-connections:5000}")
+    private int maxConnections;
+    
+    @Value("${orders.stream.subscriber-queue-size:64}")
+    private int subscriberQueueSize;
+    
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong slowDisconnects = new AtomicLong();
+    private final AtomicLong droppedTasks = new AtomicLong();
+    
+    public OrderStreamService(ObjectMapper objectMapper,
+                              @Value("${orders.stream.buffer-size:1000}") int bufferSize,
+                              @Value("${orders.stream.sender-threads:4}") int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.buffer = new BufferedEvent[bufferSize];
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "order-stream-send-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Publish an order change once the current transaction commits (right away without one)
+     */
+    public void publish(Order order, String change) {
+        OrderChangeEvent event = new OrderChangeEvent(change, order.getId(), order.getBuyerId(), order.getStatus(),
+                order.getPaymentStatus(), order.getTotal(), order.getFinalBillAmount(), LocalDateTime.now());
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(() -> broadcast(event));
+                }
+            });
+        } else {
+            submit(() -> broadcast(event));
+        }
+    }
+    
+    /**
+     * Open a stream for the given user, replaying what was missed since lastEventId
+     */
+    public SseEmitter subscribe(AuthenticatedPrincipal principal, String lastEventId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new TooManyRequestsException("Too many live connections, please try again later", 30);
+        }
+        
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Long buyerScope = principal.getRole() == User.UserRole.buyer ? principal.getId() : null;
+        Subscriber subscriber = new Subscriber(emitter, buyerScope, subscriberQueueSize);
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> {
+            close(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> close(subscriber));
+        
+        // Replay and registration run on the fan-out thread, so no event is missed or sent twice in between
+        boolean accepted = submit(() -> {
+            if (enqueue(subscriber, SseEmitter.event().comment("connected")) && replay(subscriber, lastEventId)
+                    && !subscriber.closed.get()) {
+                subscribers.add(subscriber);
+            }
+        });
+        if (!accepted) {
+            close(subscriber);
+            emitter.complete();
+        }
+        return emitter;
+    }
+    
+    /**
+     * Keep idle connections open through proxies and notice clients that went away
+     */
+    @Scheduled(fixedDelayString = "${orders.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        submit(() -> {
+            for (Subscriber subscriber : subscribers) {
+                enqueue(subscriber, SseEmitter.event().comment("ping"));
+            }
+        });
+    }
+    
+    private boolean submit(Runnable task) {
+        try {
+            fanOut.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (!fanOut.isShutdown()) {
+                droppedTasks.incrementAndGet();
+                log.warn("Order stream fan-out queue is full, dropping a task");
+            }
+            return false;
+        }
+    }
+    
+    private void broadcast(OrderChangeEvent event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize order change event for order {}: {}", event.getOrderId(), e.getMessage());
+            return;
+        }
+        BufferedEvent buffered = new BufferedEvent(nextSequence++, event.getBuyerId(), json);
+        buffer[(int) (buffered.sequence % buffer.length)] = buffered;
+        published.incrementAndGet();
+        
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.canSee(buffered) && enqueue(subscriber, toSseEvent(buffered))) {
+                delivered.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Queue the buffered events after lastEventId, or a reset if they can't be replayed (or would not
+     * fit in the subscriber's queue). Returns false if the client is already gone.
+     */
+    private boolean replay(Subscriber subscriber, String lastEventId) {
+        if (lastEventId == null || lastEventId.trim().isEmpty()) {
+            return true;
+        }
+        long lastSequence = parseSequence(lastEventId.trim());
+        long oldestBuffered = Math.max(1, nextSequence - buffer.length);
+        boolean buffered = lastSequence >= 0 && lastSequence < nextSequence && lastSequence + 1 >= oldestBuffered;
+        List<BufferedEvent> missed = new ArrayList<>();
+        for (long sequence = lastSequence + 1; buffered && sequence < nextSequence; sequence++) {
+            BufferedEvent event = buffer[(int) (sequence % buffer.length)];
+            if (subscriber.canSee(event)) {
+                missed.add(event);
+            }
+        }
+        // One queue slot is taken by the "connected" comment
+        if (!buffered || missed.size() >= subscriberQueueSize) {
+            resets.incrementAndGet();
+            return enqueue(subscriber, SseEmitter.event().name(EVENT_RESET).data("{}"));
+        }
+        for (BufferedEvent event : missed) {
+            if (!enqueue(subscriber, toSseEvent(event))) {
+                return false;
+            }
+            replayed.incrementAndGet();
+        }
+        return true;
+    }
+    
+    /**
+     * Sequence number of an event id from this run of the server, -1 otherwise
+     */
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator <= 0 || !eventId.substring(0, separator).equals(instanceId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private SseEmitter.SseEventBuilder toSseEvent(BufferedEvent buffered) {
+        return SseEmitter.event()
+                .id(instanceId + "-" + buffered.sequence)
+                .name(EVENT_ORDER)
+                .data(buffered.json);
+    }
+    
+    /**
+     * Queue an event for the subscriber and make sure a sender drains its queue. Never blocks; a full queue
+     * disconnects the subscriber. Returns false if the subscriber is (now) gone.
+     */
+    private boolean enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed.get()) {
+            subscribers.remove(subscriber);
+            return false;
+        }
+        if (!subscriber.outbox.offer(event)) {
+            // Not keeping up - it reconnects with Last-Event-ID and catches up from the buffer.
+            // The emitter is completed by the sender, never here (send/complete lock the emitter).
+            if (close(subscriber)) {
+                slowDisconnects.incrementAndGet();
+            }
+            scheduleDrain(subscriber);
+            return false;
+        }
+        scheduleDrain(subscriber);
+        return true;
+    }
+    
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+    }
+    
+    /**
+     * Send everything queued for the subscriber (runs on a sender thread, one at a time per subscriber)
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closed.get() && (event = subscriber.outbox.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away (or the emitter already completed)
+                    if (close(subscriber)) {
+                        disconnects.incrementAndGet();
+                    }
+                }
+            }
+            if (subscriber.closed.get()) {
+                // draining stays set, so nothing is scheduled for this subscriber again
+                subscriber.outbox.clear();
+                complete(subscriber.emitter);
+                return;
+            }
+            subscriber.draining.set(false);
+            // An event queued after the last poll but before draining was cleared must not be stranded
+            if (subscriber.outbox.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Drop the subscriber and free its connection slot; false if it was already closed
+     */
+    private boolean close(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.remove(subscriber);
+        connections.decrementAndGet();
+        return true;
+    }
+    
+    private static void complete(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container (timeout / error)
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        fanOut.shutdown();
+        senders.shutdown();
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber);
+            complete(subscriber.emitter);
+        }
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "orderStream";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connections.get());
+        metrics.put("streaming", subscribers.size());
+        metrics.put("published", published.get());
+        metrics.put("delivered", delivered.get());
+        metrics.put("replayed", replayed.get());
+        metrics.put("resets", resets.get());
+        metrics.put("disconnects", disconnects.get());
+        metrics.put("slowDisconnects", slowDisconnects.get());
+        metrics.put("droppedTasks", droppedTasks.get());
+        return metrics;
+    }
+    
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        // Buyer id for buyers (own orders only), null for sellers / admins (all orders)
+        private final Long buyerScope;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> outbox;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        private Subscriber(SseEmitter emitter, Long buyerScope, int queueSize) {
+            this.emitter = emitter;
+            this.buyerScope = buyerScope;
+            this.outbox = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        }
+        
+        private boolean canSee(BufferedEvent event) {
+            return buyerScope == null || buyerScope.equals(event.buyerId);
+        }
+    }
+    
+    private static final class BufferedEvent {
+        private final long sequence;
+        private final Long buyerId;
+        private final String json;
+        
+        private BufferedEvent(long sequence, Long buyerId, String json) {
+            this.sequence = sequence;
+            this.buyerId = buyerId;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.exception.TooManyRequestsException;
+import com.naturaldrops.util.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated, size-limited worker pool.
+ * A login/registration storm can then only use poolSize cores for BCrypt instead of every
+ * Tomcat worker thread; once the queue is full, callers fail fast with 429.
+ *
+ * The timeout only bounds how long a caller waits: cancelling a hash that is already running does not
+ * stop it (BCrypt ignores interrupts), only queued ones are skipped. Keep timeout-ms a little above
+ * queue-capacity x hash time / pool size, so a full queue can still drain within it.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService implements MetricsSource {
+    
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder upgraded = new LongAdder();
+    
+    public PasswordHashingService(BCryptPasswordEncoder passwordEncoder,
+                                  @Value("${security.bcrypt.pool-size:0}") int poolSize,
+                                  @Value("${security.bcrypt.queue-capacity:64}") int queueCapacity,
+                                  @Value("${security.bcrypt.timeout-ms:3000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMillis = timeoutMillis;
+        
+        // Default: half the cores (at least 2) so order traffic always keeps CPU available
+        int threads = poolSize > 0 ? poolSize : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing pool started: {} threads, queue capacity {}", threads, queueCapacity);
+    }
+    
+    public String encode(String rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+    
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+    
+    /**
+     * True if the stored hash uses a lower cost than the configured one and should be re-hashed
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+    
+    /**
+     * Re-hash the password with the current cost, or return null if the pool is busy
+     * (an upgrade is never worth failing a login for).
+     */
+    public String upgrade(String rawPassword) {
+        try {
+            String encoded = encode(rawPassword);
+            upgraded.increment();
+            return encoded;
+        } catch (TooManyRequestsException e) {
+            return null;
+        }
+    }
+    
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many authentication requests. Please try again shortly.", 1);
+        }
+        
+        try {
+            T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            completed.increment();
+            return result;
+        } catch (TimeoutException e) {
+            // Skips the task if it is still queued; a running hash finishes on its worker regardless
+            future.cancel(true);
+            timedOut.increment();
+            throw new TooManyRequestsException("Too many authentication requests. Please try again shortly.", 1);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "passwordHashing";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", executor.getMaximumPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("completed", completed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("timedOut", timedOut.sum());
+        metrics.put("upgradedHashes", upgraded.sum());
+        return metrics;
+    }
+}
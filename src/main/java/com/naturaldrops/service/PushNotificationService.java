@@ -1,5 +1,6 @@
 package com.naturaldrops.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.naturaldrops.entity.User;
 import com.naturaldrops.repository.UserRepository;
@@ -24,6 +25,8 @@ public class PushNotificationService {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    private static final int EXPO_MAX_BATCH_SIZE = 100;
+    
     @Value("${expo.push.api.url:https://exp.host/--/api/v2/push/send}")
     private String expoPushApiUrl;
     
@@ -51,52 +54,111 @@ public class PushNotificationService {
         }
     }
     
+    /**
+     * Send push notifications to many buyers at once (used by OrderEventDispatcher).
+     * Device tokens are looked up in one query and messages go to Expo in batches of
+     * up to EXPO_MAX_BATCH_SIZE per request. Returns the pushes that could not be delivered
+     * (request failed), so the caller can retry them; buyers without a device token are skipped.
+     */
+    public List<BuyerPush> trySendNotificationsToBuyers(List<BuyerPush> pushes) {
+        if (pushes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> buyerIds = new HashSet<>();
+        for (BuyerPush push : pushes) {
+            buyerIds.add(push.getBuyerId());
+        }
+        Map<Long, String> deviceTokens = new HashMap<>();
+        for (User buyer : userRepository.findAllById(buyerIds)) {
+            if (buyer.getDeviceToken() != null && !buyer.getDeviceToken().trim().isEmpty()) {
+                deviceTokens.put(buyer.getId(), buyer.getDeviceToken());
+            }
+        }
+        
+        List<BuyerPush> sendable = new ArrayList<>();
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (BuyerPush push : pushes) {
+            String deviceToken = deviceTokens.get(push.getBuyerId());
+            if (deviceToken == null) {
+                log.warn("Buyer {} does not have a device token registered", push.getBuyerId());
+                continue;
+            }
+            sendable.add(push);
+            messages.add(buildExpoMessage(deviceToken, push.getTitle(), push.getBody(), push.getData()));
+        }
+        
+        List<BuyerPush> failed = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += EXPO_MAX_BATCH_SIZE) {
+            int to = Math.min(from + EXPO_MAX_BATCH_SIZE, messages.size());
+            boolean delivered;
+            try {
+                delivered = postToExpo(messages.subList(from, to));
+            } catch (Exception e) {
+                log.error("Error sending batched push notifications: {}", e.getMessage());
+                delivered = false;
+            }
+            if (!delivered) {
+                failed.addAll(sendable.subList(from, to));
+            }
+        }
+        return failed;
+    }
+    
     /**
      * Send push notification using Expo Push Notification service
      * This works with Expo apps and React Native apps using Expo
      */
     private void sendExpoPushNotification(String deviceToken, String title, String body, Map<String, Object> data) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Arrays.asList(MediaType.APPLICATION_JSON));
-            
-            Map<String, Object> notification = new HashMap<>();
-            notification.put("to", deviceToken);
-            notification.put("title", title);
-            notification.put("body", body);
-            notification.put("sound", "default");
-            notification.put("priority", "high");
-            notification.put("channelId", "default");
-            
-            if (data != null && !data.isEmpty()) {
-                notification.put("data", data);
-            }
-            
-            List<Map<String, Object>> messages = Collections.singletonList(notification);
-            
-            HttpEntity<String> request = new HttpEntity<>(
-                    objectMapper.writeValueAsString(messages),
-                    headers
-            );
-            
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    expoPushApiUrl,
-                    request,
-                    String.class
-            );
-            
-            if (response.getStatusCode().is2xxSuccessful()) {
-                log.info("Push notification sent successfully to device: {}", deviceToken);
-            } else {
-                log.error("Failed to send push notification. Status: {}, Response: {}", 
-                        response.getStatusCode(), response.getBody());
-            }
+            postToExpo(Collections.singletonList(buildExpoMessage(deviceToken, title, body, data)));
         } catch (Exception e) {
             log.error("Error sending Expo push notification: {}", e.getMessage(), e);
         }
     }
     
+    private Map<String, Object> buildExpoMessage(String deviceToken, String title, String body, Map<String, Object> data) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("to", deviceToken);
+        notification.put("title", title);
+        notification.put("body", body);
+        notification.put("sound", "default");
+        notification.put("priority", "high");
+        notification.put("channelId", "default");
+        
+        if (data != null && !data.isEmpty()) {
+            notification.put("data", data);
+        }
+        return notification;
+    }
+    
+    /**
+     * POST a list of messages to the Expo push API (the API takes up to 100 per request)
+     */
+    private boolean postToExpo(List<Map<String, Object>> messages) throws JsonProcessingException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Arrays.asList(MediaType.APPLICATION_JSON));
+        
+        HttpEntity<String> request = new HttpEntity<>(
+                objectMapper.writeValueAsString(messages),
+                headers
+        );
+        
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                expoPushApiUrl,
+                request,
+                String.class
+        );
+        
+        if (response.getStatusCode().is2xxSuccessful()) {
+            log.info("Push notification sent successfully to {} device(s)", messages.size());
+            return true;
+        }
+        log.error("Failed to send push notification. Status: {}, Response: {}", 
+                response.getStatusCode(), response.getBody());
+        return false;
+    }
+    
     /**
      * Send FCM notification (for native apps using FCM directly)
      * This requires Firebase Admin SDK configuration
@@ -107,5 +169,37 @@ public class PushNotificationService {
         log.warn("FCM notification not implemented. Using Expo push notification service instead.");
         sendExpoPushNotification(deviceToken, title, body, data);
     }
+    
+    /**
+     * One push message for a buyer, for trySendNotificationsToBuyers
+     */
+    public static class BuyerPush {
+        private final Long buyerId;
+        private final String title;
+        private final String body;
+        private final Map<String, Object> data;
+        
+        public BuyerPush(Long buyerId, String title, String body, Map<String, Object> data) {
+            this.buyerId = buyerId;
+            this.title = title;
+            this.body = body;
+            this.data = data;
+        }
+        
+        public Long getBuyerId() {
+            return buyerId;
+        }
+        
+        public String getTitle() {
+            return title;
+        }
+        
+        public String getBody() {
+            return body;
+        }
+        
+        public Map<String, Object> getData() {
+            return data;
+        }
+    }
 }
-
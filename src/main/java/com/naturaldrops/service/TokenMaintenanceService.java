@@ -0,0 +1,132 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.repository.EmailDeadLetterRepository;
+import com.naturaldrops.repository.IdempotencyRecordRepository;
+import com.naturaldrops.repository.PasswordResetTokenRepository;
+import com.naturaldrops.repository.RefreshTokenRepository;
+import com.naturaldrops.util.ChunkedJob;
+import com.naturaldrops.util.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Background purge of expired / revoked refresh tokens, expired / used password reset tokens,
+ * expired order Idempotency-Key records and email dead letters past their retention.
+ * Rows are deleted in LIMIT-ed chunks by ChunkedJob.
+ */
+@Service
+@Slf4j
+public class TokenMaintenanceService implements MetricsSource {
+    
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final PasswordResetTokenRepository passwordResetTokenRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final EmailDeadLetterRepository emailDeadLetterRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${maintenance.token-purge.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${maintenance.token-purge.pause-ms:50}")
+    private long pauseMillis;
+    
+    @Value("${maintenance.token-purge.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+    
+    @Value("${maintenance.token-purge.dead-letter-retention-days:14}")
+    private int deadLetterRetentionDays;
+    
+    // Stats of the last run and running totals (exposed via /api/metrics)
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastRefreshTokensPurged;
+    private volatile int lastResetTokensPurged;
+    private volatile int lastIdempotencyKeysPurged;
+    private volatile int lastDeadLettersPurged;
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong totalRowsPurged = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    
+    public TokenMaintenanceService(RefreshTokenRepository refreshTokenRepository,
+                                   PasswordResetTokenRepository passwordResetTokenRepository,
+                                   IdempotencyRecordRepository idempotencyRecordRepository,
+                                   EmailDeadLetterRepository emailDeadLetterRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.emailDeadLetterRepository = emailDeadLetterRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(initialDelayString = "${maintenance.token-purge.initial-delay-ms:60000}",
+               fixedDelayString = "${maintenance.token-purge.interval-ms:900000}")
+    public void purgeExpiredTokens() {
+        long start = System.nanoTime();
+        try {
+            int refreshPurged = purgeInChunks(now -> refreshTokenRepository.deleteExpiredBatch(now, batchSize));
+            int resetPurged = purgeInChunks(now -> passwordResetTokenRepository.deleteExpiredBatch(now, batchSize));
+            int idempotencyPurged = purgeInChunks(now -> idempotencyRecordRepository.deleteExpiredBatch(now, batchSize));
+            int deadLettersPurged = purgeInChunks(now -> emailDeadLetterRepository.deleteExpiredBatch(
+                    now.minusDays(deadLetterRetentionDays), batchSize));
+            
+            lastRefreshTokensPurged = refreshPurged;
+            lastResetTokensPurged = resetPurged;
+            lastIdempotencyKeysPurged = idempotencyPurged;
+            lastDeadLettersPurged = deadLettersPurged;
+            int purged = refreshPurged + resetPurged + idempotencyPurged + deadLettersPurged;
+            totalRowsPurged.addAndGet(purged);
+            
+            if (purged > 0) {
+                log.info("Token purge: {} refresh tokens, {} password reset tokens, {} idempotency keys, {} email dead letters deleted in {} ms",
+                        refreshPurged, resetPurged, idempotencyPurged, deadLettersPurged, (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            failedRuns.incrementAndGet();
+            log.error("Token purge failed: {}", e.getMessage(), e);
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            totalRuns.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Run the chunk delete until it removes less than a full batch (or the per-run cap is hit)
+     */
+    private int purgeInChunks(ToIntFunction<LocalDateTime> deleteChunk) {
+        LocalDateTime now = LocalDateTime.now();
+        return ChunkedJob.run(transactionTemplate, batchSize, maxBatchesPerRun, pauseMillis,
+                () -> deleteChunk.applyAsInt(now));
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "tokenMaintenance";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lastRunAt", lastRunAt);
+        metrics.put("lastRunMillis", lastRunMillis);
+        metrics.put("lastRefreshTokensPurged", lastRefreshTokensPurged);
+        metrics.put("lastResetTokensPurged", lastResetTokensPurged);
+        metrics.put("lastIdempotencyKeysPurged", lastIdempotencyKeysPurged);
+        metrics.put("lastDeadLettersPurged", lastDeadLettersPurged);
+        metrics.put("totalRuns", totalRuns.get());
+        metrics.put("totalRowsPurged", totalRowsPurged.get());
+        metrics.put("failedRuns", failedRuns.get());
+        return metrics;
+    }
+}
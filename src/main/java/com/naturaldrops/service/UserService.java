@@ -3,20 +3,27 @@ package com.naturaldrops.service;
 import com.naturaldrops.entity.User;
 import com.naturaldrops.exception.ResourceNotFoundException;
 import com.naturaldrops.repository.UserRepository;
+import com.naturaldrops.security.TokenEpochRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
     
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final TokenEpochRegistry tokenEpochRegistry;
+    private final PasswordHashingService passwordHashingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -36,25 +43,57 @@ public class UserService {
         return userRepository.findByRole(role);
     }
     
-    @Transactional
+    /**
+     * Not transactional as a whole: the password is hashed with no connection held, and the insert runs
+     * in a short transaction that checks the username again.
+     */
     public User createUser(User user, String createdBy) {
-        // Check if username exists
-        if (userRepository.existsByUsername(user.getUsername())) {
+        // Check if username exists (plain JDBC, so a taken username costs no hash)
+        if (usernameExists(user.getUsername())) {
             throw new IllegalArgumentException("Username already exists");
         }
         
         // Encode password
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
         user.setCreatedAt(LocalDateTime.now());
         user.setCreatedBy(createdBy);
         
-        return userRepository.save(user);
+        return transactionTemplate.execute(status -> {
+            // Taken by someone else while the password was being hashed
+            if (userRepository.existsByUsername(user.getUsername())) {
+                throw new IllegalArgumentException("Username already exists");
+            }
+            return userRepository.save(user);
+        });
     }
     
-    @Transactional
+    /**
+     * Not transactional as a whole: a new password is hashed first with no connection held, then the
+     * update runs in a short transaction against a freshly loaded row.
+     */
     public User updateUser(Long id, User userDetails) {
+        // Only encode a password if provided and different (not already encoded)
+        String newPassword = userDetails.getPassword();
+        String newPasswordHash = null;
+        if (newPassword != null && !newPassword.isEmpty() && !newPassword.startsWith("$2a$")) {
+            String currentHash = findPasswordHash(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
+            if (!newPassword.equals(currentHash)) {
+                newPasswordHash = passwordHashingService.encode(newPassword);
+            }
+        }
+        return transactionTemplate.execute(status -> applyUserUpdate(id, userDetails, newPasswordHash));
+    }
+    
+    private User applyUserUpdate(Long id, User userDetails, String newPasswordHash) {
         User user = getUserById(id);
         
+        // Access tokens carry username/role/active claims - remember them to detect changes
+        String previousUsername = user.getUsername();
+        String previousPassword = user.getPassword();
+        User.UserRole previousRole = user.getRole();
+        Boolean previousIsActive = user.getIsActive();
+        
         // Only update username if provided and different
         if (userDetails.getUsername() != null && !userDetails.getUsername().isEmpty()) {
             // Check username uniqueness if changed
@@ -70,12 +109,9 @@ public class UserService {
             user.setFullName(userDetails.getFullName().isEmpty() ? null : userDetails.getFullName());
         }
         
-        // Only update password if provided and different (not already encoded)
-        if (userDetails.getPassword() != null && 
-            !userDetails.getPassword().isEmpty() && 
-            !userDetails.getPassword().equals(user.getPassword()) &&
-            !userDetails.getPassword().startsWith("$2a$")) { // Don't re-encode already encoded passwords
-            user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
+        // Only update password if provided and different (hashed above, before the transaction)
+        if (newPasswordHash != null) {
+            user.setPassword(newPasswordHash);
         }
         
         // Only update role if provided
@@ -153,7 +189,26 @@ public class UserService {
             user.setIsActive(userDetails.getIsActive());
         }
         
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        
+        // Revoke outstanding access tokens if anything they carry (or the password) changed
+        if (!previousUsername.equals(user.getUsername())
+                || !previousPassword.equals(user.getPassword())
+                || previousRole != user.getRole()
+                || !Objects.equals(previousIsActive, user.getIsActive())) {
+            tokenEpochRegistry.bump(id);
+        }
+        return savedUser;
+    }
+    
+    private boolean usernameExists(String username) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE username = ?)", Boolean.class, username));
+    }
+    
+    private Optional<String> findPasswordHash(Long id) {
+        return jdbcTemplate.queryForList("SELECT password FROM users WHERE id = ?", String.class, id)
+                .stream().findFirst();
     }
     
     @Transactional
@@ -166,6 +221,7 @@ public class UserService {
         }
         
         userRepository.deleteById(id);
+        tokenEpochRegistry.evict(id);
     }
     
     @Transactional
@@ -187,7 +243,11 @@ public class UserService {
         
         // Only Seller and Buyer accounts can be deactivated
         user.setIsActive(false);
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        
+        // Revoke outstanding access tokens immediately
+        tokenEpochRegistry.bump(id);
+        return savedUser;
     }
 }
 
@@ -0,0 +1,131 @@
+package com.naturaldrops.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Small in-process LRU cache with a per-entry time-to-live.
+ * Memory is bounded by maxSize (least recently used entries are dropped first),
+ * and entries older than the TTL are treated as misses.
+ * Thread-safe; hit/miss/eviction counters are kept for metrics.
+ */
+public class BoundedTtlCache<K, V> {
+    
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+    
+    // Bumped on every invalidation so a load that raced with an eviction is not cached
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    public BoundedTtlCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > BoundedTtlCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    public V get(K key) {
+        synchronized (entries) {
+            CacheEntry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAt > ttlNanos) {
+                entries.remove(key);
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+    
+    /**
+     * Return the cached value or load it with the given function.
+     * Null results are not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generationBeforeLoad = generation.get();
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            synchronized (entries) {
+                if (generation.get() == generationBeforeLoad) {
+                    entries.put(key, new CacheEntry<>(loaded, System.nanoTime()));
+                }
+            }
+        }
+        return loaded;
+    }
+    
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new CacheEntry<>(value, System.nanoTime()));
+        }
+    }
+    
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(key);
+        }
+    }
+    
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long createdAt;
+        
+        private CacheEntry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
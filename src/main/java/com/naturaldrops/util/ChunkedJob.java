@@ -0,0 +1,51 @@
+package com.naturaldrops.util;
+
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Runs a bulk delete / move in LIMIT-ed chunks, each in its own short transaction with a pause in
+ * between, so a large backlog never holds long locks or one huge transaction.
+ */
+public final class ChunkedJob {
+    
+    private ChunkedJob() {
+    }
+    
+    /**
+     * Run the chunk until it handles less than a full chunk, maxChunks is hit or the thread is
+     * interrupted during a pause. The chunk returns the number of rows it handled.
+     *
+     * @return the total number of rows handled
+     */
+    public static int run(TransactionTemplate transactionTemplate, int chunkSize, int maxChunks,
+                          long pauseMillis, IntSupplier chunk) {
+        int total = 0;
+        for (int i = 0; i < maxChunks; i++) {
+            Integer handled = transactionTemplate.execute(status -> chunk.getAsInt());
+            int count = handled != null ? handled : 0;
+            total += count;
+            if (count < chunkSize) {
+                break;
+            }
+            if (!pause(pauseMillis)) {
+                break;
+            }
+        }
+        return total;
+    }
+    
+    private static boolean pause(long pauseMillis) {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
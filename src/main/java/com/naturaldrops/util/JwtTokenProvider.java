@@ -3,6 +3,7 @@ package com.naturaldrops.util;
 import com.naturaldrops.entity.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -12,11 +13,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 @Slf4j
@@ -34,7 +37,21 @@ public class JwtTokenProvider {
     @Value("${jwt.clock-skew-tolerance:300000}") // 5 minutes in milliseconds
     private long clockSkewTolerance;
     
-    private SecretKey getSigningKey() {
+    // Derived once at startup - the key and the parser are immutable and thread-safe,
+    // so every request shares them instead of rebuilding them per call
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    
+    @PostConstruct
+    void init() {
+        this.signingKey = buildSigningKey(jwtSecret);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setAllowedClockSkewSeconds(clockSkewTolerance / 1000) // Convert milliseconds to seconds
+                .build();
+    }
+    
+    private static SecretKey buildSigningKey(String jwtSecret) {
         // Ensure secret is at least 256 bits (32 characters) for HS256
         String secret = jwtSecret;
         if (secret.length() < 32) {
@@ -52,13 +69,21 @@ public class JwtTokenProvider {
         claims.put("userId", user.getId());
         claims.put("username", user.getUsername());
         claims.put("role", user.getRole().name());
+        // Authorization state, so JwtTokenFilter never has to load the user per request.
+        // A bump of users.token_epoch invalidates every token carrying an older epoch.
+        claims.put("epoch", user.getTokenEpoch() != null ? user.getTokenEpoch() : 0L);
+        if (user.getStatus() != null) {
+            claims.put("status", user.getStatus().name());
+        }
+        // Legacy users without isActive are treated as active (as at login)
+        claims.put("active", user.getIsActive() == null || user.getIsActive());
         
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(user.getUsername())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + accessTokenExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -70,92 +95,73 @@ public class JwtTokenProvider {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(user.getUsername())
+                // Unique ID so two refresh tokens issued in the same second never share a digest
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
-    private io.jsonwebtoken.JwtParserBuilder getJwtParserBuilder() {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .setAllowedClockSkewSeconds(clockSkewTolerance / 1000); // Convert milliseconds to seconds
-    }
-    
-    public String getUsernameFromToken(String token) {
-        try {
-            Claims claims = getJwtParserBuilder()
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getSubject();
-        } catch (Exception e) {
-            log.error("Error extracting username from token", e);
+    /**
+     * Verify the token once and return all claims callers need.
+     * Returns null if the token is invalid, expired or tampered with.
+     */
+    public TokenClaims parseToken(String token) {
+        Claims claims = parseVerifiedClaims(token);
+        if (claims == null) {
             return null;
         }
+        return new TokenClaims(
+                claims.get("userId", Long.class),
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.get("type", String.class),
+                claims.getExpiration(),
+                claims.get("epoch", Long.class),
+                claims.get("status", String.class),
+                claims.get("active", Boolean.class)
+        );
     }
     
-    public Long getUserIdFromToken(String token) {
+    private Claims parseVerifiedClaims(String token) {
         try {
-            Claims claims = getJwtParserBuilder()
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.get("userId", Long.class);
-        } catch (Exception e) {
-            log.error("Error extracting user ID from token", e);
-            return null;
-        }
-    }
-    
-    public String getRoleFromToken(String token) {
-        try {
-            Claims claims = getJwtParserBuilder()
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.get("role", String.class);
-        } catch (Exception e) {
-            log.error("Error extracting role from token", e);
-            return null;
-        }
-    }
-    
-    public boolean validateToken(String token) {
-        try {
-            getJwtParserBuilder()
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return jwtParser.parseClaimsJws(token).getBody();
         } catch (ExpiredJwtException e) {
             log.warn("JWT token is expired: {}", e.getMessage());
-            return false;
         } catch (UnsupportedJwtException e) {
             log.warn("JWT token is unsupported: {}", e.getMessage());
-            return false;
         } catch (MalformedJwtException e) {
             log.warn("Invalid JWT token: {}", e.getMessage());
-            return false;
         } catch (IllegalArgumentException e) {
             log.warn("JWT claims string is empty: {}", e.getMessage());
-            return false;
         } catch (Exception e) {
             log.error("Error validating JWT token", e);
-            return false;
         }
+        return null;
+    }
+    
+    public String getUsernameFromToken(String token) {
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getUsername() : null;
+    }
+    
+    public Long getUserIdFromToken(String token) {
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getUserId() : null;
+    }
+    
+    public String getRoleFromToken(String token) {
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getRole() : null;
+    }
+    
+    public boolean validateToken(String token) {
+        return parseVerifiedClaims(token) != null;
     }
     
     public Date getExpirationDateFromToken(String token) {
-        try {
-            Claims claims = getJwtParserBuilder()
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getExpiration();
-        } catch (Exception e) {
-            log.error("Error extracting expiration date from token", e);
-            return null;
-        }
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getExpiration() : null;
     }
 }
-
@@ -0,0 +1,20 @@
+package com.naturaldrops.util;
+
+import java.util.Map;
+
+/**
+ * Implemented by components that expose runtime counters (cache hits, rejections, ...).
+ * All beans of this type are collected by MetricsController under GET /api/metrics.
+ */
+public interface MetricsSource {
+    
+    /**
+     * Key under which the metrics are grouped in the response
+     */
+    String getMetricsName();
+    
+    /**
+     * Snapshot of the current counter values
+     */
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,53 @@
+package com.naturaldrops.util;
+
+import com.naturaldrops.entity.Order;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in an order list sorted by (orderDate, id), newest or oldest first.
+ * Serialized as an opaque URL-safe token for the X-Next-Cursor header / cursor parameter.
+ */
+@Getter
+@RequiredArgsConstructor
+public class OrderCursor {
+    
+    /**
+     * First page (no position yet)
+     */
+    public static final OrderCursor START = new OrderCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+    
+    private final LocalDateTime orderDate;
+    private final Long id;
+    
+    public static OrderCursor after(Order order) {
+        return new OrderCursor(order.getOrderDate(), order.getId());
+    }
+    
+    public String encode() {
+        String raw = orderDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a cursor; null or empty means the first page
+     */
+    public static OrderCursor decode(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
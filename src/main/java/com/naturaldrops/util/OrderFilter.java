@@ -0,0 +1,54 @@
+package com.naturaldrops.util;
+
+import com.naturaldrops.entity.Order;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Criteria for order list queries (OrderRepositoryCustom). Every field is optional - null / empty means
+ * "any" - and any combination of them becomes a single SQL statement.
+ */
+@Data
+@NoArgsConstructor
+public class OrderFilter {
+    
+    // Any of these statuses (empty = all)
+    private Set<Order.OrderStatus> statuses = new LinkedHashSet<>();
+    
+    // order_date range, both ends inclusive
+    private LocalDateTime from;
+    private LocalDateTime to;
+    
+    private Long buyerId;
+    private Order.PaymentStatus paymentStatus;
+    
+    // Matched case-insensitively
+    private String deliveryPartner;
+    
+    private Sort sort = Sort.newest;
+    
+    public enum Sort {
+        newest, // orderDate DESC, id DESC
+        oldest  // orderDate ASC, id ASC
+    }
+    
+    public static OrderFilter of(Long buyerId, Order.OrderStatus status) {
+        OrderFilter filter = new OrderFilter();
+        filter.setBuyerId(buyerId);
+        if (status != null) {
+            filter.getStatuses().add(status);
+        }
+        return filter;
+    }
+    
+    public static OrderFilter between(LocalDateTime from, LocalDateTime to) {
+        OrderFilter filter = new OrderFilter();
+        filter.setFrom(from);
+        filter.setTo(to);
+        return filter;
+    }
+}
@@ -0,0 +1,94 @@
+package com.naturaldrops.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Single background thread that drains an outbox table.
+ *
+ * wakeUp() schedules a drain unless one is already pending; wakeUpAfterCommit() does the same once
+ * the caller's transaction commits. A drain runs the pass until it returns false (nothing more due),
+ * and a wake-up arriving mid-drain schedules another one, so no enqueued row waits for the next poll.
+ */
+@Slf4j
+public class OutboxWorker {
+    
+    private final String name;
+    private final BooleanSupplier pass;
+    private final ExecutorService worker;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    
+    /**
+     * @param name  thread name, also used in log messages
+     * @param pass  handles one batch; returns true if another pass should follow right away
+     */
+    public OutboxWorker(String name, BooleanSupplier pass) {
+        this.name = name;
+        this.pass = pass;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Wake up after the current transaction commits (right away if there is none)
+     */
+    public void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+    
+    /**
+     * Schedule a drain on the worker unless one is already pending
+     */
+    public void wakeUp() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                worker.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+            }
+        }
+    }
+    
+    private void drain() {
+        // Reset first so a wake-up arriving mid-drain schedules another pass
+        drainScheduled.set(false);
+        try {
+            while (pass.getAsBoolean()) {
+                // keep going until nothing is due
+            }
+        } catch (RuntimeException e) {
+            log.error("{} failed: {}", name, e.getMessage(), e);
+        }
+    }
+    
+    public void shutdown() {
+        worker.shutdown();
+    }
+    
+    /**
+     * Retry delay after the given number of attempts: base * 2^(attempts - 1), capped at max
+     */
+    public static long backoffSeconds(int attempts, long baseSeconds, long maxSeconds) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(maxSeconds, baseSeconds << exponent);
+    }
+}
@@ -0,0 +1,124 @@
+package com.naturaldrops.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-key token bucket limiter with lock striping and bounded memory.
+ *
+ * Each bucket is stored as a single "theoretical arrival time" (GCRA form of a token bucket):
+ * a request is allowed while that time is no more than (capacity - 1) refill intervals ahead
+ * of now. Checking an existing key allocates nothing. Keys are spread over independently locked
+ * stripes, each an LRU map capped at maxKeys / stripes, so idle keys are evicted first
+ * (an evicted bucket is simply full again).
+ */
+public class TokenBucketRateLimiter {
+    
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    
+    /**
+     * @param capacity         burst size (tokens in a full bucket)
+     * @param refillPerMinute  tokens added per minute
+     * @param maxKeys          upper bound on tracked keys across all stripes
+     * @param stripeCount      number of lock stripes (rounded up to a power of two)
+     */
+    public TokenBucketRateLimiter(int capacity, double refillPerMinute, int maxKeys, int stripeCount) {
+        if (capacity <= 0 || refillPerMinute <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("capacity, refillPerMinute and maxKeys must be positive");
+        }
+        this.intervalNanos = (long) (60_000_000_000L / refillPerMinute);
+        this.burstNanos = intervalNanos * (capacity - 1);
+        
+        int stripesPow2 = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[stripesPow2];
+        this.stripeMask = stripesPow2 - 1;
+        int keysPerStripe = Math.max(1, maxKeys / stripesPow2);
+        for (int i = 0; i < stripesPow2; i++) {
+            stripes[i] = new Stripe(keysPerStripe);
+        }
+    }
+    
+    /**
+     * Try to take one token for the key.
+     *
+     * @return 0 if allowed, otherwise the nanoseconds until a token becomes available
+     */
+    public long tryAcquire(String key) {
+        int h = key.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & stripeMask];
+        long now = System.nanoTime();
+        
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(now);
+                stripe.buckets.put(key, bucket);
+            }
+            
+            long arrival = Math.max(bucket.theoreticalArrival, now);
+            long waitNanos = arrival - burstNanos - now;
+            if (waitNanos > 0) {
+                rejected.increment();
+                return waitNanos;
+            }
+            bucket.theoreticalArrival = arrival + intervalNanos;
+        }
+        allowed.increment();
+        return 0;
+    }
+    
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+    
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    public long getEvictionCount() {
+        return evicted.sum();
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+    
+    private final class Stripe {
+        final LinkedHashMap<String, Bucket> buckets;
+        
+        Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    if (size() > maxKeys) {
+                        evicted.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+    
+    private static final class Bucket {
+        long theoreticalArrival;
+        
+        Bucket(long now) {
+            this.theoreticalArrival = now;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.naturaldrops.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Claims of a JWT whose signature and expiry have already been verified.
+ * Produced once per request by {@link JwtTokenProvider#parseToken(String)} so callers
+ * never have to re-parse (and re-verify) the same token to read another claim.
+ */
+@Getter
+@RequiredArgsConstructor
+public class TokenClaims {
+    
+    private final Long userId;
+    private final String username;
+    private final String role;
+    private final String type;
+    private final Date expiration;
+    // Access tokens only: authorization state at issue time (null on refresh / legacy tokens)
+    private final Long tokenEpoch;
+    private final String status;
+    private final Boolean active;
+    
+    public boolean isRefreshToken() {
+        return "refresh".equals(type);
+    }
+}
@@ -0,0 +1,48 @@
+package com.naturaldrops.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests of opaque tokens, so the database only stores and indexes
+ * a fixed 64-character hex value instead of the full JWT.
+ */
+public final class TokenDigest {
+    
+    public static final int HEX_LENGTH = 64;
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    private TokenDigest() {
+    }
+    
+    public static String sha256Hex(String token) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        
+        char[] out = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            out[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            out[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(out);
+    }
+    
+    /**
+     * Digest of a value read from the token column: rows written before digests
+     * were introduced still hold the raw JWT.
+     */
+    public static String ofStoredValue(String stored) {
+        return stored.length() == HEX_LENGTH ? stored : sha256Hex(stored);
+    }
+}
@@ -0,0 +1,242 @@
+-- Baseline: the schema as Hibernate (ddl-auto=update) created it, so a new database gets the same tables.
+-- Existing databases are baselined at version 0 and run this too: every statement is IF NOT EXISTS,
+-- and columns added to existing tables after they were first created are added explicitly at the end.
+
+CREATE SEQUENCE IF NOT EXISTS orders_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_status_history_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS stock_history_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS notifications_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS buyer_notifications_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGSERIAL PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    full_name VARCHAR(100),
+    password VARCHAR(255) NOT NULL,
+    role VARCHAR(255) NOT NULL,
+    status VARCHAR(20),
+    is_active BOOLEAN,
+    email VARCHAR(100),
+    phone VARCHAR(20),
+    gender VARCHAR(10),
+    date_of_birth DATE,
+    alternate_phone VARCHAR(20),
+    profile_photo TEXT,
+    house_door_no VARCHAR(50),
+    street_area VARCHAR(200),
+    city VARCHAR(100),
+    district VARCHAR(100),
+    state VARCHAR(100),
+    pincode VARCHAR(10),
+    landmark VARCHAR(200),
+    address TEXT,
+    created_at TIMESTAMP NOT NULL,
+    created_by VARCHAR(50),
+    device_token TEXT,
+    token_epoch BIGINT,
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token VARCHAR(64) NOT NULL,
+    expiry_time TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    revoked BOOLEAN NOT NULL,
+    CONSTRAINT uk_refresh_tokens_token UNIQUE (token)
+);
+
+CREATE TABLE IF NOT EXISTS password_reset_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token VARCHAR(255) NOT NULL,
+    otp VARCHAR(6),
+    expiry_time TIMESTAMP NOT NULL,
+    used BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_password_reset_tokens_token UNIQUE (token)
+);
+
+CREATE TABLE IF NOT EXISTS settings (
+    id BIGSERIAL PRIMARY KEY,
+    setting_key VARCHAR(100) NOT NULL,
+    setting_value TEXT,
+    updated_at TIMESTAMP,
+    CONSTRAINT uk_settings_setting_key UNIQUE (setting_key)
+);
+
+CREATE TABLE IF NOT EXISTS menu_items (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    category VARCHAR(255) NOT NULL,
+    image TEXT,
+    description TEXT,
+    stock_quantity INTEGER NOT NULL,
+    low_stock_threshold INTEGER,
+    rate NUMERIC(10, 2) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS product_images (
+    id BIGSERIAL PRIMARY KEY,
+    menu_item_id BIGINT NOT NULL,
+    image_url TEXT NOT NULL,
+    is_primary BOOLEAN,
+    display_order INTEGER,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_product_images_menu_item FOREIGN KEY (menu_item_id) REFERENCES menu_items (id)
+);
+
+CREATE TABLE IF NOT EXISTS product_videos (
+    id BIGSERIAL PRIMARY KEY,
+    menu_item_id BIGINT NOT NULL,
+    video_url TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_product_videos_menu_item FOREIGN KEY (menu_item_id) REFERENCES menu_items (id)
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    id BIGINT PRIMARY KEY DEFAULT nextval('orders_seq'),
+    buyer_id BIGINT NOT NULL,
+    buyer_name VARCHAR(100) NOT NULL,
+    buyer_phone VARCHAR(20),
+    buyer_address TEXT,
+    delivery_address TEXT,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    total NUMERIC(10, 2) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    order_date TIMESTAMP NOT NULL,
+    status_updated_at TIMESTAMP,
+    tracking_number VARCHAR(100),
+    delivery_partner VARCHAR(100),
+    estimated_delivery TIMESTAMP,
+    confirmed_by VARCHAR(50),
+    delivered_by VARCHAR(50),
+    delivery_time_minutes INTEGER,
+    start_time TIMESTAMP,
+    delivery_total_seconds BIGINT,
+    delivery_start_timestamp BIGINT,
+    final_bill_amount NUMERIC(10, 2),
+    payment_status VARCHAR(20),
+    billed_by VARCHAR(50),
+    billed_at TIMESTAMP,
+    billing_notes TEXT,
+    version BIGINT DEFAULT 0 NOT NULL
+);
+
+-- No foreign key to orders: orders may be partitioned (db/partition_orders.sql)
+CREATE TABLE IF NOT EXISTS order_items (
+    id BIGINT PRIMARY KEY DEFAULT nextval('order_items_seq'),
+    order_id BIGINT NOT NULL,
+    menu_item_id BIGINT,
+    item_name VARCHAR(100) NOT NULL,
+    quantity INTEGER NOT NULL,
+    rate NUMERIC(10, 2) NOT NULL,
+    cart_quantity INTEGER NOT NULL,
+    subtotal NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS order_status_history (
+    id BIGINT PRIMARY KEY DEFAULT nextval('order_status_history_seq'),
+    order_id BIGINT NOT NULL,
+    old_status VARCHAR(50),
+    new_status VARCHAR(50) NOT NULL,
+    changed_by VARCHAR(50) NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    notes TEXT
+);
+
+CREATE TABLE IF NOT EXISTS stock_history (
+    id BIGINT PRIMARY KEY DEFAULT nextval('stock_history_seq'),
+    menu_item_id BIGINT NOT NULL,
+    order_id BIGINT,
+    change_type VARCHAR(50) NOT NULL,
+    quantity_change INTEGER NOT NULL,
+    quantity_before INTEGER NOT NULL,
+    quantity_after INTEGER NOT NULL,
+    changed_by VARCHAR(50),
+    changed_at TIMESTAMP NOT NULL,
+    notes TEXT
+);
+
+CREATE TABLE IF NOT EXISTS notifications (
+    id BIGINT PRIMARY KEY DEFAULT nextval('notifications_seq'),
+    order_id BIGINT NOT NULL,
+    customer_name VARCHAR(100) NOT NULL,
+    total NUMERIC(10, 2) NOT NULL,
+    item_count INTEGER NOT NULL,
+    is_read BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS buyer_notifications (
+    id BIGINT PRIMARY KEY DEFAULT nextval('buyer_notifications_seq'),
+    buyer_id BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    message TEXT NOT NULL,
+    is_read BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS order_events (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    buyer_id BIGINT NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    message TEXT NOT NULL,
+    notification_created BOOLEAN NOT NULL,
+    attempts INTEGER NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGSERIAL PRIMARY KEY,
+    idempotency_key VARCHAR(64) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    order_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_idempotency_keys_key UNIQUE (idempotency_key)
+);
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    to_address VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    attempts INTEGER NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS email_dead_letters (
+    id BIGSERIAL PRIMARY KEY,
+    to_address VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    attempts INTEGER NOT NULL,
+    last_error VARCHAR(500),
+    queued_at TIMESTAMP NOT NULL,
+    failed_at TIMESTAMP NOT NULL
+);
+
+-- Indexes the entities declared with @Index
+CREATE INDEX IF NOT EXISTS idx_orders_date_id ON orders (order_date, id);
+CREATE INDEX IF NOT EXISTS idx_orders_status_date_id ON orders (status, order_date, id);
+CREATE INDEX IF NOT EXISTS idx_orders_buyer_date_id ON orders (buyer_id, order_date, id);
+CREATE INDEX IF NOT EXISTS idx_order_items_order_id ON order_items (order_id);
+CREATE INDEX IF NOT EXISTS idx_order_events_next_attempt ON order_events (next_attempt_at);
+CREATE INDEX IF NOT EXISTS idx_order_events_order_id ON order_events (order_id, id);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
+CREATE INDEX IF NOT EXISTS idx_email_outbox_next_attempt ON email_outbox (next_attempt_at);
+
+-- Columns added to tables that existed before
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_epoch BIGINT;
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
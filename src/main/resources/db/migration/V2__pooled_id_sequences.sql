@@ -0,0 +1,30 @@
+-- Order, order item, history and notification ids come from pooled sequences (allocationSize 50 in the
+-- entities) so Hibernate can batch inserts. Tables created before the switch were filled by IDENTITY
+-- columns, so each sequence is moved past the existing ids, and the id column default is pointed at the
+-- sequence for plain SQL inserts. A no-op on databases created by V1.
+
+DO $$
+DECLARE
+    tbl text;
+    seq text;
+    max_id bigint;
+    seq_last bigint;
+    seq_called boolean;
+BEGIN
+    FOREACH tbl IN ARRAY ARRAY['orders', 'order_items', 'order_status_history', 'stock_history',
+                               'notifications', 'buyer_notifications'] LOOP
+        seq := tbl || '_seq';
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I START WITH 1 INCREMENT BY 50', seq);
+
+        EXECUTE format('LOCK TABLE %I IN SHARE ROW EXCLUSIVE MODE', tbl);
+        EXECUTE format('SELECT coalesce(max(id), 0) FROM %I', tbl) INTO max_id;
+        EXECUTE format('SELECT last_value, is_called FROM %I', seq) INTO seq_last, seq_called;
+
+        -- The pooled optimizer hands out ids above the previous sequence value (or from it, if never called)
+        IF (seq_called AND max_id > seq_last) OR (NOT seq_called AND max_id >= seq_last) THEN
+            PERFORM setval(seq::regclass, max_id);
+        END IF;
+
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L::regclass)', tbl, seq);
+    END LOOP;
+END $$;
@@ -0,0 +1,19 @@
+-- Trigram index for GET /api/orders/search. The indexed expression must stay identical to
+-- OrderRepository.SEARCH_DOCUMENT or the index is not used.
+-- pg_trgm needs CREATE privilege on the database; without it the search still works (sequential scan).
+
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege THEN
+    RAISE WARNING 'pg_trgm could not be installed, order search will not be indexed: %', SQLERRM;
+END $$;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        CREATE INDEX IF NOT EXISTS idx_orders_search_trgm ON orders USING gin ((
+            lower(coalesce(buyer_name, '') || ' ' || coalesce(buyer_phone, '') || ' ' ||
+                  coalesce(delivery_address, '') || ' ' || coalesce(tracking_number, ''))) gin_trgm_ops);
+    END IF;
+END $$;
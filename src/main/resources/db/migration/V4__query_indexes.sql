@@ -0,0 +1,49 @@
+-- Indexes for the access paths the repositories actually use. Built CONCURRENTLY so existing tables
+-- keep taking writes (Flyway runs this migration outside a transaction).
+--
+-- Nothing here touches orders: it may have been partitioned by db/partition_orders.sql, and
+-- CREATE INDEX CONCURRENTLY fails on a partitioned table (see README.md in this directory).
+--
+-- Already covered elsewhere:
+--   orders (status, order_date) / (buyer_id, order_date)  idx_orders_status_date_id / idx_orders_buyer_date_id (V1)
+--   order_items (order_id)                                 idx_order_items_order_id (V1)
+--   settings (setting_key)                                 unique constraint uk_settings_setting_key (V1)
+
+-- OrderStatusHistoryRepository: history of an order by changed_at (GET /api/orders/{id}/history)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_status_history_order_changed
+    ON order_status_history (order_id, changed_at);
+
+-- StockHistoryRepository: stock changes of a menu item / an order, newest first
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_history_item_changed
+    ON stock_history (menu_item_id, changed_at);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_history_order_changed
+    ON stock_history (order_id, changed_at);
+
+-- BuyerNotificationRepository: a buyer's (unread) notifications, newest first, and the unread count
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_buyer_notifications_buyer_read_created
+    ON buyer_notifications (buyer_id, is_read, created_at);
+
+-- NotificationRepository: seller notifications by read state, newest first
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notifications_read_created
+    ON notifications (is_read, created_at);
+
+-- UserRepository.findFirstByEmail (password reset)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email
+    ON users (email);
+
+-- Token lookups by user (login, logout, password reset)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refresh_tokens_user_id
+    ON refresh_tokens (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_password_reset_tokens_user_id
+    ON password_reset_tokens (user_id);
+
+-- Product media of a menu item
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_product_images_menu_item_id
+    ON product_images (menu_item_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_product_videos_menu_item_id
+    ON product_videos (menu_item_id);
+
+-- MenuItemRepository.findLowStockItems: only the few items at or below their threshold are indexed
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_menu_items_low_stock
+    ON menu_items (stock_quantity)
+    WHERE stock_quantity <= low_stock_threshold;
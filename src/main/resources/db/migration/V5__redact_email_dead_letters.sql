@@ -0,0 +1,6 @@
+-- Dead letters used to keep the full email body, which can contain a password reset link or OTP.
+-- New rows are stored redacted by EmailDispatcher; blank out the ones written before.
+UPDATE email_dead_letters SET body = '[redacted]' WHERE body <> '[redacted]';
+
+-- TokenMaintenanceService purges dead letters by failed_at
+CREATE INDEX IF NOT EXISTS idx_email_dead_letters_failed_at ON email_dead_letters (failed_at);
@@ -0,0 +1,136 @@
+package com.naturaldrops.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EXPLAIN check for the query indexes of migration V4 (and the order indexes of V1): seeds synthetic rows,
+ * then runs each repository query shape with EXPLAIN (ANALYZE, FORMAT JSON) and fails if the plan does
+ * not use the expected index. Same checks as benchmark/index_plans.sql, which also prints the timings.
+ *
+ * Everything runs in one transaction that is rolled back at the end.
+ *
+ * Needs a PostgreSQL database (migrated with the Flyway scripts); skipped unless TEST_DATABASE_URL is set:
+ *     TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/naturaldrops_test \
+ *     TEST_DATABASE_USERNAME=postgres TEST_DATABASE_PASSWORD=postgres \
+ *     mvn test -Dtest=QueryIndexPlanTest
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryIndexPlanTest {
+    
+    private HikariDataSource dataSource;
+    private Connection connection;
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeAll
+    void setUp() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_DATABASE_URL"));
+        dataSource.setUsername(System.getenv("TEST_DATABASE_USERNAME"));
+        dataSource.setPassword(System.getenv("TEST_DATABASE_PASSWORD"));
+        dataSource.setMaximumPoolSize(1);
+        
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        
+        connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        seed();
+    }
+    
+    @AfterAll
+    void tearDown() throws SQLException {
+        if (connection != null) {
+            connection.rollback();
+            connection.close();
+        }
+        dataSource.close();
+    }
+    
+    static Stream<Arguments> queries() {
+        return Stream.of(
+                Arguments.of("Order status history", "idx_order_status_history_order_changed",
+                        "SELECT * FROM order_status_history WHERE order_id = 4242 ORDER BY changed_at ASC"),
+                Arguments.of("Stock history of a menu item", "idx_stock_history_item_changed",
+                        "SELECT * FROM stock_history WHERE menu_item_id = 42 ORDER BY changed_at DESC"),
+                Arguments.of("Stock history of an order", "idx_stock_history_order_changed",
+                        "SELECT * FROM stock_history WHERE order_id = 4242 ORDER BY changed_at DESC"),
+                Arguments.of("Unread buyer notifications", "idx_buyer_notifications_buyer_read_created",
+                        "SELECT * FROM buyer_notifications WHERE buyer_id = 42 AND is_read = false ORDER BY created_at DESC"),
+                Arguments.of("Unread buyer notification count", "idx_buyer_notifications_buyer_read_created",
+                        "SELECT count(*) FROM buyer_notifications WHERE buyer_id = 42 AND is_read = false"),
+                Arguments.of("Unread seller notifications", "idx_notifications_read_created",
+                        "SELECT * FROM notifications WHERE is_read = false ORDER BY created_at DESC"),
+                Arguments.of("User by email", "idx_users_email",
+                        "SELECT * FROM users WHERE email = 'bench4242@example.com' LIMIT 1"),
+                Arguments.of("Setting by key", "uk_settings_setting_key",
+                        "SELECT * FROM settings WHERE setting_key = 'bench_4242'"),
+                Arguments.of("Low stock items", "idx_menu_items_low_stock",
+                        "SELECT * FROM menu_items WHERE stock_quantity <= low_stock_threshold ORDER BY stock_quantity ASC"));
+    }
+    
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void queryUsesIndex(String label, String indexName, String query) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (ANALYZE, FORMAT JSON) " + query, String.class);
+        assertTrue(plan.contains("\"Index Name\": \"" + indexName + "\""),
+                label + " does not use " + indexName + ": " + plan);
+    }
+    
+    private void seed() {
+        jdbcTemplate.execute(
+                "INSERT INTO users (username, password, role, email, created_at) " +
+                "SELECT 'bench_user_' || g, 'x', 'buyer', 'bench' || g || '@example.com', now() " +
+                "FROM generate_series(1, 50000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO menu_items (name, category, stock_quantity, low_stock_threshold, rate, created_at) " +
+                "SELECT 'Bench item ' || g, 'water', CASE WHEN g % 100 = 0 THEN 2 ELSE 500 END, 10, 20, now() " +
+                "FROM generate_series(1, 20000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO settings (setting_key, setting_value, updated_at) " +
+                "SELECT 'bench_' || g, 'x', now() FROM generate_series(1, 20000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO order_status_history (order_id, old_status, new_status, changed_by, changed_at) " +
+                "SELECT g / 4, 'pending', 'confirmed', 'bench', now() - g * interval '1 second' " +
+                "FROM generate_series(1, 400000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO stock_history (menu_item_id, order_id, change_type, quantity_change, quantity_before, " +
+                "quantity_after, changed_by, changed_at) " +
+                "SELECT g % 2000, g / 2, 'order_confirmed', -1, 10, 9, 'bench', now() - g * interval '1 second' " +
+                "FROM generate_series(1, 400000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO buyer_notifications (buyer_id, order_id, message, is_read, created_at) " +
+                "SELECT g % 20000, g, 'Bench notification', g % 3 = 0, now() - g * interval '1 second' " +
+                "FROM generate_series(1, 400000) AS g");
+        jdbcTemplate.execute(
+                "INSERT INTO notifications (order_id, customer_name, total, item_count, is_read, created_at) " +
+                "SELECT g, 'Bench buyer', 100, 1, g % 50 <> 0, now() - g * interval '1 second' " +
+                "FROM generate_series(1, 200000) AS g");
+        
+        for (String table : new String[] { "users", "menu_items", "settings", "order_status_history",
+                "stock_history", "buyer_notifications", "notifications" }) {
+            jdbcTemplate.execute("ANALYZE " + table);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.naturaldrops.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.naturaldrops.entity.EmailDeadLetter;
+import com.naturaldrops.entity.EmailOutbox;
+import com.naturaldrops.repository.EmailDeadLetterRepository;
+import com.naturaldrops.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * EmailDispatcher against a real SMTP server (GreenMail): a batch goes out over one connection and
+ * its rows are deleted, a failed send is retried with backoff, and the last failed attempt moves the
+ * email to the dead letters without its body.
+ *
+ * The outbox and dead letter repositories are in-memory fakes; batches are dispatched directly on the
+ * test thread instead of through the background worker.
+ */
+class EmailDispatcherTest {
+    
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+    
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_SECONDS = 30;
+    private static final String RESET_BODY = "Your password reset OTP is 654321";
+    
+    private final Map<Long, EmailOutbox> outbox = new TreeMap<>();
+    private final List<EmailDeadLetter> deadLetters = new ArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    
+    private CountingMailSender mailSender;
+    private EmailDispatcher dispatcher;
+    
+    @BeforeEach
+    void setUp() {
+        EmailOutboxRepository outboxRepository = mock(EmailOutboxRepository.class);
+        when(outboxRepository.lockDueBatch(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return outbox.values().stream()
+                    .filter(email -> !email.getNextAttemptAt().isAfter(now))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        });
+        // The fake stores the entity objects themselves, so saving changes nothing
+        when(outboxRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            invocation.<Iterable<Long>>getArgument(0).forEach(outbox::remove);
+            return null;
+        }).when(outboxRepository).deleteAllByIdInBatch(any());
+        
+        EmailDeadLetterRepository deadLetterRepository = mock(EmailDeadLetterRepository.class);
+        when(deadLetterRepository.save(any())).thenAnswer(invocation -> {
+            deadLetters.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        
+        mailSender = new CountingMailSender();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        
+        dispatcher = new EmailDispatcher(mailSender, outboxRepository, deadLetterRepository,
+                new NoOpTransactionManager());
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "no-reply@naturaldrops.com");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(dispatcher, "baseBackoffSeconds", BASE_BACKOFF_SECONDS);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffSeconds", 3600L);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 120L);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+    
+    @Test
+    void sendsTheBatchOverOneConnectionAndDeletesTheRows() throws Exception {
+        queue("buyer1@example.com", "Order confirmed", "Order #1 is confirmed", 0);
+        queue("buyer2@example.com", "Order confirmed", "Order #2 is confirmed", 0);
+        queue("buyer3@example.com", "Password reset", RESET_BODY, 0);
+        
+        assertEquals(3, dispatchBatch());
+        
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(3, received.length);
+        assertEquals(1, mailSender.connections.get());
+        assertTrue(outbox.isEmpty());
+        assertTrue(deadLetters.isEmpty());
+        
+        MimeMessage reset = received[2];
+        assertEquals("Password reset", reset.getSubject());
+        assertEquals("buyer3@example.com", reset.getAllRecipients()[0].toString());
+        assertTrue(GreenMailUtil.getBody(reset).contains("654321"));
+        assertEquals(3L, dispatcher.getMetrics().get("sent"));
+        assertEquals(1L, dispatcher.getMetrics().get("batches"));
+    }
+    
+    @Test
+    void failedSendIsRetriedWithBackoff() throws Exception {
+        EmailOutbox email = queue("buyer@example.com", "Order confirmed", "Order #7 is confirmed", 0);
+        mailSender.setPort(unusedPort());
+        
+        LocalDateTime before = LocalDateTime.now();
+        assertEquals(1, dispatchBatch());
+        
+        assertEquals(0, greenMail.getReceivedMessages().length);
+        assertTrue(outbox.containsKey(email.getId()));
+        assertEquals(1, email.getAttempts());
+        assertNotNull(email.getLastError());
+        assertFalse(email.getNextAttemptAt().isBefore(before.plusSeconds(BASE_BACKOFF_SECONDS)));
+        // Not due yet
+        assertEquals(0, dispatchBatch());
+        
+        // Server reachable again and the backoff has passed
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        email.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        assertEquals(1, dispatchBatch());
+        
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertTrue(outbox.isEmpty());
+        assertTrue(deadLetters.isEmpty());
+        assertEquals(1L, dispatcher.getMetrics().get("failedAttempts"));
+        assertEquals(1L, dispatcher.getMetrics().get("sent"));
+    }
+    
+    @Test
+    void lastFailedAttemptMovesTheEmailToDeadLettersWithoutItsBody() throws Exception {
+        EmailOutbox email = queue("buyer@example.com", "Password reset", RESET_BODY, MAX_ATTEMPTS - 1);
+        mailSender.setPort(unusedPort());
+        
+        assertEquals(1, dispatchBatch());
+        
+        assertTrue(outbox.isEmpty());
+        assertEquals(1, deadLetters.size());
+        EmailDeadLetter deadLetter = deadLetters.get(0);
+        assertEquals("buyer@example.com", deadLetter.getToAddress());
+        assertEquals("Password reset", deadLetter.getSubject());
+        assertEquals(MAX_ATTEMPTS, deadLetter.getAttempts());
+        assertEquals(email.getCreatedAt(), deadLetter.getQueuedAt());
+        assertEquals("[redacted]", deadLetter.getBody());
+        assertNotNull(deadLetter.getLastError());
+        assertFalse(deadLetter.getLastError().contains("654321"));
+        assertEquals(1L, dispatcher.getMetrics().get("deadLettered"));
+    }
+    
+    private EmailOutbox queue(String toAddress, String subject, String body, int attempts) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutbox email = new EmailOutbox(ids.incrementAndGet(), toAddress, subject, body, attempts,
+                now.minusSeconds(1), null, now);
+        outbox.put(email.getId(), email);
+        return email;
+    }
+    
+    private int dispatchBatch() {
+        Integer dispatched = ReflectionTestUtils.invokeMethod(dispatcher, "dispatchBatch");
+        return dispatched != null ? dispatched : 0;
+    }
+    
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    /**
+     * Counts SMTP connections: JavaMailSenderImpl connects once per send() call
+     */
+    private static final class CountingMailSender extends JavaMailSenderImpl {
+        
+        private final AtomicInteger connections = new AtomicInteger();
+        
+        @Override
+        protected Transport connectTransport() throws MessagingException {
+            connections.incrementAndGet();
+            return super.connectTransport();
+        }
+    }
+    
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+        
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+        
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+        
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.naturaldrops.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.naturaldrops.dto.request.CreateOrderRequest;
+import com.naturaldrops.entity.IdempotencyRecord;
+import com.naturaldrops.entity.Order;
+import com.naturaldrops.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent requests with the same Idempotency-Key must produce exactly one order, both when they hit
+ * the same instance (the later ones wait on the in-flight request) and when they race on different
+ * instances (the idempotency_keys unique constraint rejects the loser, whose order is rolled back).
+ *
+ * The repository and transaction manager are in-memory fakes: a record insert fails like the unique
+ * constraint if the key is taken, and a rollback discards the orders and records of that transaction.
+ */
+class IdempotencyServiceConcurrencyTest {
+    
+    private static final String KEY = "checkout-7f3a";
+    private static final Long USER_ID = 42L;
+    
+    private final AtomicLong orderIds = new AtomicLong(1000);
+    private final Set<Long> committedOrders = ConcurrentHashMap.newKeySet();
+    private final Set<Long> rolledBackOrders = ConcurrentHashMap.newKeySet();
+    private final Map<String, IdempotencyRecord> records = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<Long>> transactionOrders = ThreadLocal.withInitial(ArrayList::new);
+    private final ThreadLocal<List<String>> transactionKeys = ThreadLocal.withInitial(ArrayList::new);
+    
+    private OrderService orderService;
+    private IdempotencyRecordRepository repository;
+    private CreateOrderRequest request;
+    
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        when(orderService.getOrderById(any())).thenAnswer(invocation -> order(invocation.getArgument(0)));
+        
+        repository = mock(IdempotencyRecordRepository.class);
+        when(repository.findValidByKey(anyString(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(records.get(invocation.<String>getArgument(0))));
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            if (records.putIfAbsent(record.getIdempotencyKey(), record) != null) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            transactionKeys.get().add(record.getIdempotencyKey());
+            return record;
+        });
+        
+        request = new CreateOrderRequest();
+        request.setBuyerId(USER_ID);
+        request.setBuyerName("Buyer");
+        request.setTotal(new BigDecimal("80.00"));
+    }
+    
+    @Test
+    void sameKeyOnOneInstanceWaitsForTheInFlightRequest() throws Exception {
+        int clients = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        when(orderService.createOrder(any())).thenAnswer(invocation -> {
+            // Slow enough that the other requests arrive while this one is in flight
+            Thread.sleep(200);
+            return createOrderInTransaction();
+        });
+        IdempotencyService service = newInstance();
+        
+        List<IdempotencyService.Outcome> outcomes = runConcurrently(clients, start, () -> service);
+        
+        verify(orderService, times(1)).createOrder(any());
+        // Only the first request got as far as the database; the others were served from memory
+        verify(repository, times(1)).findValidByKey(anyString(), any());
+        assertEquals(1, committedOrders.size());
+        assertTrue(rolledBackOrders.isEmpty());
+        assertSameOrder(outcomes, committedOrders.iterator().next());
+        assertEquals(clients - 1, outcomes.stream().filter(IdempotencyService.Outcome::isReplayed).count());
+    }
+    
+    @Test
+    void sameKeyOnTwoInstancesIsDecidedByTheUniqueConstraint() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        // Both requests find no record and create their order before either stores the key
+        CyclicBarrier bothCreating = new CyclicBarrier(2);
+        when(orderService.createOrder(any())).thenAnswer(invocation -> {
+            Order order = createOrderInTransaction();
+            bothCreating.await(5, TimeUnit.SECONDS);
+            return order;
+        });
+        List<IdempotencyService> instances = new ArrayList<>();
+        instances.add(newInstance());
+        instances.add(newInstance());
+        
+        List<IdempotencyService.Outcome> outcomes = runConcurrently(2, start, instances.iterator()::next);
+        
+        verify(orderService, times(2)).createOrder(any());
+        assertEquals(1, committedOrders.size());
+        assertEquals(1, rolledBackOrders.size());
+        assertFalse(committedOrders.containsAll(rolledBackOrders));
+        Long orderId = committedOrders.iterator().next();
+        assertEquals(orderId, records.values().iterator().next().getOrderId());
+        assertSameOrder(outcomes, orderId);
+        assertEquals(1, outcomes.stream().filter(IdempotencyService.Outcome::isReplayed).count());
+    }
+    
+    private List<IdempotencyService.Outcome> runConcurrently(int clients, CountDownLatch start,
+                                                             Supplier<IdempotencyService> instance)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<IdempotencyService.Outcome>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                IdempotencyService service = instance.get();
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return service.createOrder(KEY, USER_ID, request);
+                }));
+            }
+            start.countDown();
+            
+            List<IdempotencyService.Outcome> outcomes = new ArrayList<>();
+            for (Future<IdempotencyService.Outcome> future : futures) {
+                outcomes.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private IdempotencyService newInstance() {
+        IdempotencyService service = new IdempotencyService(orderService, repository, new ObjectMapper(),
+                new FakeTransactionManager(), 24, 100);
+        ReflectionTestUtils.setField(service, "waitTimeoutMillis", 5_000L);
+        return service;
+    }
+    
+    private Order createOrderInTransaction() {
+        Long id = orderIds.incrementAndGet();
+        transactionOrders.get().add(id);
+        return order(id);
+    }
+    
+    private static Order order(Long id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+    
+    private static void assertSameOrder(List<IdempotencyService.Outcome> outcomes, Long orderId) {
+        for (IdempotencyService.Outcome outcome : outcomes) {
+            assertEquals(orderId, outcome.getOrder().getId());
+        }
+    }
+    
+    /**
+     * Commit keeps the orders and records written by the current thread's transaction; rollback drops them
+     */
+    private final class FakeTransactionManager extends AbstractPlatformTransactionManager {
+        
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+        
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            transactionOrders.get().clear();
+            transactionKeys.get().clear();
+        }
+        
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            committedOrders.addAll(transactionOrders.get());
+        }
+        
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rolledBackOrders.addAll(transactionOrders.get());
+            for (String key : transactionKeys.get()) {
+                records.remove(key);
+            }
+        }
+    }
+}
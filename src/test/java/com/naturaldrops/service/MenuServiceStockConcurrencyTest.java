@@ -0,0 +1,197 @@
+package com.naturaldrops.service;
+
+import com.naturaldrops.repository.MenuItemRepository;
+import com.naturaldrops.repository.ProductImageRepository;
+import com.naturaldrops.repository.ProductVideoRepository;
+import com.naturaldrops.repository.StockHistoryRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stress test for MenuService.reserveStock: many threads confirm multi-item orders (lines in random
+ * order) against two items with less stock than the total demand. Stock must never go negative, every
+ * accepted order must be deducted exactly once, the rest must be rejected as short, and the id-ordered
+ * row locks must not deadlock.
+ *
+ * Runs on a real JPA setup (JpaTransactionManager, StockHistoryRepository) so the history rows go through
+ * Hibernate's pooled sequence and JDBC batching as in the application.
+ *
+ * Needs a PostgreSQL database (migrated with the Flyway scripts); skipped unless TEST_DATABASE_URL is set:
+ *     TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/naturaldrops_test \
+ *     TEST_DATABASE_USERNAME=postgres TEST_DATABASE_PASSWORD=postgres \
+ *     mvn test -Dtest=MenuServiceStockConcurrencyTest
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class MenuServiceStockConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    private static final int ORDERS = 600;
+    private static final int INITIAL_STOCK = 250;
+    private static final long FIRST_ORDER_ID = 900_000_000L;
+    
+    private HikariDataSource dataSource;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private MenuService menuService;
+    private long[] itemIds;
+    
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_DATABASE_URL"));
+        dataSource.setUsername(System.getenv("TEST_DATABASE_USERNAME"));
+        dataSource.setPassword(System.getenv("TEST_DATABASE_PASSWORD"));
+        dataSource.setMaximumPoolSize(THREADS);
+        
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        
+        Properties jpaProperties = new Properties();
+        jpaProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        jpaProperties.setProperty("hibernate.hbm2ddl.auto", "none");
+        jpaProperties.setProperty("hibernate.jdbc.batch_size", "50");
+        jpaProperties.setProperty("hibernate.order_inserts", "true");
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan("com.naturaldrops.entity");
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setJpaProperties(jpaProperties);
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+        
+        StockHistoryRepository stockHistoryRepository = new JpaRepositoryFactory(
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(StockHistoryRepository.class);
+        
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionManager.setDataSource(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        menuService = new MenuService(mock(MenuItemRepository.class), mock(ProductImageRepository.class),
+                mock(ProductVideoRepository.class), stockHistoryRepository,
+                new NamedParameterJdbcTemplate(jdbcTemplate));
+        
+        itemIds = new long[] { insertItem("stress-test-can-20l"), insertItem("stress-test-can-10l") };
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (itemIds != null) {
+            for (long itemId : itemIds) {
+                jdbcTemplate.update("DELETE FROM stock_history WHERE menu_item_id = ?", itemId);
+                jdbcTemplate.update("DELETE FROM menu_items WHERE id = ?", itemId);
+            }
+        }
+        entityManagerFactoryBean.destroy();
+        dataSource.close();
+    }
+    
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        AtomicIntegerArray reserved = new AtomicIntegerArray(itemIds.length);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            long orderId = FIRST_ORDER_ID + i;
+            Random random = new Random(orderId);
+            int[] quantities = { random.nextInt(4), 1 + random.nextInt(3) };
+            List<MenuService.StockLine> lines = new ArrayList<>();
+            for (int item = 0; item < itemIds.length; item++) {
+                lines.add(new MenuService.StockLine(itemIds[item], quantities[item]));
+            }
+            // Lines in either order: the service must still lock rows in id order
+            Collections.shuffle(lines, random);
+            
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    transactionTemplate.execute(status -> {
+                        menuService.reserveStock(lines, orderId, "stress-test");
+                        return null;
+                    });
+                    for (int item = 0; item < itemIds.length; item++) {
+                        reserved.addAndGet(item, quantities[item]);
+                    }
+                    accepted.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    assertTrue(e.getMessage().startsWith("Insufficient stock"), e.getMessage());
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        
+        start.countDown();
+        pool.shutdown();
+        // Any other failure (deadlock, serialization error, ...) fails the test here
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        
+        assertEquals(ORDERS, accepted.get() + rejected.get());
+        assertTrue(rejected.get() > 0, "demand should exceed stock so the limit is actually hit");
+        for (int item = 0; item < itemIds.length; item++) {
+            long itemId = itemIds[item];
+            int stock = jdbcTemplate.queryForObject(
+                    "SELECT stock_quantity FROM menu_items WHERE id = ?", Integer.class, itemId);
+            int historyTotal = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(quantity_change), 0) FROM stock_history WHERE menu_item_id = ?",
+                    Integer.class, itemId);
+            
+            assertTrue(stock >= 0, "stock went negative: " + stock);
+            assertEquals(INITIAL_STOCK - reserved.get(item), stock);
+            assertEquals(-reserved.get(item), historyTotal);
+        }
+    }
+    
+    private long insertItem(String name) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO menu_items (name, category, stock_quantity, low_stock_threshold, rate, created_at, updated_at) " +
+                "VALUES (?, 'water', ?, 10, 40.00, ?, ?) RETURNING id",
+                Long.class, name, INITIAL_STOCK, now, now);
+    }
+}
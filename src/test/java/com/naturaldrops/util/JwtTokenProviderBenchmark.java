@@ -0,0 +1,132 @@
+package com.naturaldrops.util;
+
+import com.naturaldrops.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JMH benchmark for token verification on the request path: the cached key / parser with a single
+ * parseToken() against the previous per-call key and parser construction with two verifications
+ * (validateToken, then getUserIdFromToken).
+ *
+ * Skipped in normal builds; the JUnit test runs JMH, writes the scores to target/jmh-jwt-token-provider.json
+ * and asserts that the cached path is faster. Run with
+ *     mvn test -Dbenchmarks=true -Dtest=JwtTokenProviderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+    
+    private static final String SECRET = "benchmark-secret-key-with-at-least-32-characters";
+    private static final String REPORT = "target/jmh-jwt-token-provider.json";
+    
+    private JwtTokenProvider provider;
+    private String token;
+    
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "accessTokenExpiration", 7_200_000L);
+        ReflectionTestUtils.setField(provider, "refreshTokenExpiration", 604_800_000L);
+        ReflectionTestUtils.setField(provider, "clockSkewTolerance", 300_000L);
+        provider.init();
+        
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("benchmark");
+        user.setRole(User.UserRole.buyer);
+        user.setStatus(User.UserStatus.APPROVED);
+        user.setIsActive(true);
+        token = provider.generateAccessToken(user);
+    }
+    
+    @Benchmark
+    public Long cachedParser() {
+        return provider.parseToken(token).getUserId();
+    }
+    
+    @Benchmark
+    public Long perCallParser() {
+        return previousVerification(token);
+    }
+    
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void cachedParserIsFasterThanPerCallParser() throws Exception {
+        setUp();
+        assertEquals(42L, cachedParser());
+        assertEquals(42L, perCallParser());
+        
+        Options options = new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getName() + "\\.")
+                .resultFormat(ResultFormatType.JSON)
+                .result(REPORT)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        
+        Map<String, Double> nanosPerToken = new HashMap<>();
+        for (RunResult result : results) {
+            nanosPerToken.put(result.getParams().getBenchmark().replaceFirst(".*\\.", ""),
+                    result.getPrimaryResult().getScore());
+        }
+        double cached = nanosPerToken.get("cachedParser");
+        double perCall = nanosPerToken.get("perCallParser");
+        assertTrue(cached < perCall, String.format(
+                "cached parser (%.0f ns/token) should beat per-call parser (%.0f ns/token)", cached, perCall));
+    }
+    
+    /**
+     * What JwtTokenFilter did before: build the key and parser on every call, verify for validateToken()
+     * and verify again for getUserIdFromToken()
+     */
+    private static Long previousVerification(String token) {
+        if (buildParserAndParse(token) == null) {
+            return null;
+        }
+        return buildParserAndParse(token).get("userId", Long.class);
+    }
+    
+    private static Claims buildParserAndParse(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .setAllowedClockSkewSeconds(300)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}